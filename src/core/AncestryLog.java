@@ -0,0 +1,229 @@
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import programElements.Addition;
+import programElements.Constant;
+import programElements.InputVariable;
+import programElements.LogisticFunction;
+import programElements.Multiplication;
+import programElements.Operator;
+import programElements.ProgramElement;
+import programElements.ProtectedDivision;
+import programElements.Sine;
+import programElements.Subtraction;
+
+// binary format of the ancestry log written by Utils, and the tool that rebuilds a model from it:
+// the ancestry file holds fixed size records (parents are always written before their offspring),
+// the random tree file holds the programs of random trees and initial individuals by id
+public class AncestryLog {
+
+	public static final long NONE = -1;
+
+	// id, operator, first, second, randomTree1, randomTree2, mutationStep, boundedMutation
+	public static final int RECORD_SIZE = 8 + 1 + 8 + 8 + 8 + 8 + 8 + 1;
+
+	// records mapped at once while scanning backwards
+	protected static final int RECORDS_PER_WINDOW = 1 << 16;
+
+	public static void writeRecord(DataOutput out, long id, int operator, long first, long second, long randomTree1,
+			long randomTree2, double mutationStep, boolean boundedMutation) throws IOException {
+		out.writeLong(id);
+		out.writeByte(operator);
+		out.writeLong(first);
+		out.writeLong(second);
+		out.writeLong(randomTree1);
+		out.writeLong(randomTree2);
+		out.writeDouble(mutationStep);
+		out.writeBoolean(boundedMutation);
+	}
+
+	public static void writeProgram(DataOutput out, long id, List<ProgramElement> program) throws IOException {
+		out.writeLong(id);
+		out.writeInt(program.size());
+		for (ProgramElement element : program) {
+			if (element instanceof Constant) {
+				out.writeByte(CompiledProgram.CONSTANT);
+				out.writeDouble(((Constant) element).getValue());
+			} else if (element instanceof InputVariable) {
+				out.writeByte(CompiledProgram.VARIABLE);
+				out.writeInt(((InputVariable) element).getVariableIndex());
+			} else {
+				int opcode = CompiledProgram.opcodeOf((Operator) element);
+				out.writeByte(opcode);
+				if (opcode == CompiledProgram.GENERIC_OPERATOR) {
+					out.writeUTF(element.getClass().getName());
+				}
+			}
+		}
+	}
+
+	protected static ArrayList<ProgramElement> readProgram(DataInput in, int length) throws IOException {
+		ArrayList<ProgramElement> program = new ArrayList<ProgramElement>(length);
+		for (int i = 0; i < length; i++) {
+			int opcode = in.readByte();
+			switch (opcode) {
+				case CompiledProgram.CONSTANT:
+					program.add(new Constant(in.readDouble()));
+					break;
+				case CompiledProgram.VARIABLE:
+					program.add(new InputVariable(in.readInt()));
+					break;
+				case CompiledProgram.ADDITION:
+					program.add(new Addition());
+					break;
+				case CompiledProgram.SUBTRACTION:
+					program.add(new Subtraction());
+					break;
+				case CompiledProgram.MULTIPLICATION:
+					program.add(new Multiplication());
+					break;
+				case CompiledProgram.PROTECTED_DIVISION:
+					program.add(new ProtectedDivision());
+					break;
+				case CompiledProgram.LOGISTIC_FUNCTION:
+					program.add(new LogisticFunction());
+					break;
+				case CompiledProgram.SINE:
+					program.add(new Sine());
+					break;
+				default:
+					String className = in.readUTF();
+					try {
+						program.add((ProgramElement) Class.forName(className).getDeclaredConstructor().newInstance());
+					} catch (ReflectiveOperationException e) {
+						throw new IOException("Unknown program element " + className, e);
+					}
+			}
+		}
+		return program;
+	}
+
+	// writes the part of the ancestry the given individual depends on, offspring before their parents, followed by
+	// the random trees it uses; returns the number of ancestry records written
+	public static long reconstruct(String ancestryFilename, String randomTreesFilename, long id, String outputFilename)
+			throws IOException {
+		PrintWriter out = new PrintWriter(outputFilename, "UTF-8");
+		try {
+			out.println("# model of individual " + id);
+			HashSet<Long> randomTrees = new HashSet<Long>();
+			long records = writeAncestry(ancestryFilename, id, out, randomTrees);
+			if (records == 0) {
+				out.println("# individual " + id + " not found in the ancestry log");
+			}
+			writeRandomTrees(randomTreesFilename, randomTrees, out);
+			return records;
+		} finally {
+			out.close();
+		}
+	}
+
+	// scans the ancestry file backwards, only the ids still to be found are kept in memory
+	protected static long writeAncestry(String ancestryFilename, long id, PrintWriter out, HashSet<Long> randomTrees)
+			throws IOException {
+		HashSet<Long> pending = new HashSet<Long>();
+		pending.add(id);
+		long records = 0;
+		RandomAccessFile file = new RandomAccessFile(ancestryFilename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			// an incomplete last record (run still writing) is ignored
+			long end = (channel.size() / RECORD_SIZE) * RECORD_SIZE;
+			while (end > 0 && !pending.isEmpty()) {
+				long start = Math.max(0, end - (long) RECORDS_PER_WINDOW * RECORD_SIZE);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				for (int position = (int) (end - start) - RECORD_SIZE; position >= 0; position -= RECORD_SIZE) {
+					long recordId = window.getLong(position);
+					if (!pending.remove(recordId)) {
+						continue;
+					}
+					int operator = window.get(position + 8);
+					long first = window.getLong(position + 9);
+					long second = window.getLong(position + 17);
+					long randomTree1 = window.getLong(position + 25);
+					long randomTree2 = window.getLong(position + 33);
+					double mutationStep = window.getDouble(position + 41);
+					boolean boundedMutation = window.get(position + 49) != 0;
+					switch (operator) {
+						case AncestryNode.CROSSOVER:
+							out.println(recordId + " = crossover " + first + " " + second + " r" + randomTree1);
+							pending.add(first);
+							pending.add(second);
+							randomTrees.add(randomTree1);
+							break;
+						case AncestryNode.MUTATION:
+							out.println(recordId + " = mutation " + first + " r" + randomTree1 + " r" + randomTree2 + " "
+									+ mutationStep + (boundedMutation ? " bounded" : ""));
+							pending.add(first);
+							randomTrees.add(randomTree1);
+							randomTrees.add(randomTree2);
+							break;
+						default:
+							out.println(recordId + " = initial r" + randomTree1);
+							randomTrees.add(randomTree1);
+					}
+					records++;
+				}
+				end = start;
+			}
+		} finally {
+			file.close();
+		}
+		for (long missing : pending) {
+			out.println("# ancestor " + missing + " not found in the ancestry log");
+		}
+		return records;
+	}
+
+	protected static void writeRandomTrees(String randomTreesFilename, HashSet<Long> randomTrees, PrintWriter out)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(randomTreesFilename)));
+		try {
+			while (!randomTrees.isEmpty()) {
+				long id;
+				try {
+					id = in.readLong();
+				} catch (EOFException e) {
+					break;
+				}
+				ArrayList<ProgramElement> program = readProgram(in, in.readInt());
+				// trees can be logged more than once
+				if (randomTrees.remove(id)) {
+					Individual tree = new Individual();
+					for (ProgramElement programElement : program) {
+						tree.addProgramElement(programElement);
+					}
+					out.println("r" + id + " =" + tree.print());
+				}
+			}
+		} finally {
+			in.close();
+		}
+		for (long missing : randomTrees) {
+			out.println("# random tree " + missing + " not found in the random tree log");
+		}
+	}
+
+	// usage: AncestryLog <ancestry file> <random tree file> <individual id> <output file>
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			System.out.println("Usage: AncestryLog <ancestry file> <random tree file> <individual id> <output file>");
+			return;
+		}
+		long records = reconstruct(args[0], args[1], Long.parseLong(args[2]), args[3]);
+		System.out.println("Wrote " + records + " ancestry records to " + args[3]);
+	}
+}
@@ -0,0 +1,151 @@
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import programElements.Addition;
+import programElements.Constant;
+import programElements.LogisticFunction;
+import programElements.Multiplication;
+import programElements.ProgramElement;
+import programElements.Subtraction;
+
+// how a geometric semantic offspring was created, enough to rebuild its program without storing it
+public class AncestryNode implements Serializable {
+
+	private static final long serialVersionUID = 7L;
+
+	public static final int INITIAL = 0;
+	public static final int CROSSOVER = 1;
+	public static final int MUTATION = 2;
+
+	protected long id;
+	protected int operator;
+	// the program of an initial individual
+	protected List<ProgramElement> program;
+	// parents (second is null for mutation)
+	protected AncestryNode first, second;
+	// random tree programs (randomTree2 is null for crossover)
+	protected List<ProgramElement> randomTree1, randomTree2;
+	protected double mutationStep;
+	protected boolean boundedMutation;
+
+	protected AncestryNode(long id, int operator) {
+		this.id = id;
+		this.operator = operator;
+	}
+
+	public static AncestryNode initial(long id, List<ProgramElement> program) {
+		AncestryNode node = new AncestryNode(id, INITIAL);
+		node.program = program;
+		return node;
+	}
+
+	// p1 * lf(r) + (1 - lf(r)) * p2
+	public static AncestryNode crossover(long id, AncestryNode first, AncestryNode second, List<ProgramElement> randomTree) {
+		AncestryNode node = new AncestryNode(id, CROSSOVER);
+		node.first = first;
+		node.second = second;
+		node.randomTree1 = randomTree;
+		return node;
+	}
+
+	// p + step * (r1 - r2), with r1 and r2 bounded by the logistic function if boundedMutation is set
+	public static AncestryNode mutation(long id, AncestryNode parent, List<ProgramElement> randomTree1,
+			List<ProgramElement> randomTree2, double mutationStep, boolean boundedMutation) {
+		AncestryNode node = new AncestryNode(id, MUTATION);
+		node.first = parent;
+		node.randomTree1 = randomTree1;
+		node.randomTree2 = randomTree2;
+		node.mutationStep = mutationStep;
+		node.boundedMutation = boundedMutation;
+		return node;
+	}
+
+	// rebuilds the prefix program of the offspring, without recursion since ancestries span thousands of generations
+	public ArrayList<ProgramElement> buildProgram() {
+		ArrayList<ProgramElement> out = new ArrayList<ProgramElement>();
+		// items are either program elements to emit, programs to copy or ancestry nodes to expand
+		ArrayDeque<Object> stack = new ArrayDeque<Object>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			Object item = stack.pop();
+			if (item instanceof ProgramElement) {
+				out.add((ProgramElement) item);
+			} else if (item instanceof List) {
+				@SuppressWarnings("unchecked")
+				List<ProgramElement> elements = (List<ProgramElement>) item;
+				out.addAll(elements);
+			} else {
+				AncestryNode node = (AncestryNode) item;
+				Object[] expansion = node.expand();
+				for (int i = expansion.length - 1; i >= 0; i--) {
+					stack.push(expansion[i]);
+				}
+			}
+		}
+		return out;
+	}
+
+	// the prefix layout of GsgpRun.buildCrossoverIndividual and buildMutationIndividual
+	protected Object[] expand() {
+		switch (operator) {
+			case CROSSOVER:
+				return new Object[] { new Addition(), new Multiplication(), first, new LogisticFunction(), randomTree1,
+						new Multiplication(), new Subtraction(), new Constant(1.0), new LogisticFunction(), randomTree1,
+						second };
+			case MUTATION:
+				ArrayList<Object> expansion = new ArrayList<Object>();
+				expansion.add(new Addition());
+				expansion.add(first);
+				expansion.add(new Multiplication());
+				expansion.add(new Constant(mutationStep));
+				expansion.add(new Subtraction());
+				if (boundedMutation) {
+					expansion.add(new LogisticFunction());
+				}
+				expansion.add(randomTree1);
+				if (boundedMutation) {
+					expansion.add(new LogisticFunction());
+				}
+				expansion.add(randomTree2);
+				return expansion.toArray();
+			default:
+				return new Object[] { program };
+		}
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public int getOperator() {
+		return operator;
+	}
+
+	public AncestryNode getFirst() {
+		return first;
+	}
+
+	public AncestryNode getSecond() {
+		return second;
+	}
+
+	public List<ProgramElement> getRandomTree1() {
+		return randomTree1;
+	}
+
+	public List<ProgramElement> getRandomTree2() {
+		return randomTree2;
+	}
+
+	public double getMutationStep() {
+		return mutationStep;
+	}
+
+	public boolean getBoundedMutation() {
+		return boundedMutation;
+	}
+}
@@ -0,0 +1,106 @@
+package core;
+
+import java.util.Arrays;
+
+import programElements.ArrayKernels;
+import programElements.Operator;
+
+// evaluates compiled programs one instruction at a time over all rows of a column major data set
+public class BatchEvaluator {
+
+	// one scratch column per stack slot, the stack height is bounded by the depth of the evaluated tree
+	protected double[][] buffers = new double[0][];
+	protected int bufferLength;
+
+	// the column currently held by each stack slot, either a scratch buffer or a (read only) data column
+	protected double[][] slots = new double[0][];
+
+	protected double[][][] arguments = new double[0][][];
+
+	public double[] evaluate(CompiledProgram program, double[][] columns) {
+		int rows = columns.length == 0 ? 0 : columns[0].length;
+		ensureCapacity(program.getMaximumStackSize(), rows);
+		ArrayKernels kernels = ArrayKernels.get();
+
+		int top = 0;
+		for (int k = 0; k < program.getLength(); k++) {
+			int opcode = program.getOpcode(k);
+			if (opcode == CompiledProgram.VARIABLE) {
+				slots[top++] = columns[program.getOperand(k)];
+				continue;
+			}
+			if (opcode == CompiledProgram.CONSTANT) {
+				Arrays.fill(buffers[top], 0, rows, program.getConstant(k));
+				slots[top] = buffers[top];
+				top++;
+				continue;
+			}
+			double[] first = slots[top - 1];
+			double[] second = top > 1 ? slots[top - 2] : null;
+			double[] out;
+			switch (opcode) {
+				case CompiledProgram.ADDITION:
+					out = buffers[--top - 1];
+					kernels.add(first, second, out, rows);
+					break;
+				case CompiledProgram.SUBTRACTION:
+					out = buffers[--top - 1];
+					kernels.subtract(first, second, out, rows);
+					break;
+				case CompiledProgram.MULTIPLICATION:
+					out = buffers[--top - 1];
+					kernels.multiply(first, second, out, rows);
+					break;
+				case CompiledProgram.PROTECTED_DIVISION:
+					out = buffers[--top - 1];
+					kernels.protectedDivide(first, second, out, rows);
+					break;
+				case CompiledProgram.LOGISTIC_FUNCTION:
+					out = buffers[top - 1];
+					kernels.logistic(first, out, rows);
+					break;
+				case CompiledProgram.SINE:
+					out = buffers[top - 1];
+					kernels.sine(first, out, rows);
+					break;
+				default:
+					Operator operator = program.getOperator(k);
+					int arity = operator.getArity();
+					double[][] operatorArguments = argumentBuffer(arity);
+					for (int a = 0; a < arity; a++) {
+						operatorArguments[a] = slots[top - 1 - a];
+					}
+					out = buffers[top - arity];
+					operator.performArrayOperation(operatorArguments, out, rows);
+					top -= arity - 1;
+			}
+			slots[top - 1] = out;
+		}
+		return Arrays.copyOf(slots[0], rows);
+	}
+
+	protected void ensureCapacity(int stackSize, int rows) {
+		if (rows > bufferLength) {
+			buffers = new double[0][];
+			bufferLength = rows;
+		}
+		if (stackSize > buffers.length) {
+			int oldSize = buffers.length;
+			buffers = Arrays.copyOf(buffers, stackSize);
+			for (int s = oldSize; s < stackSize; s++) {
+				buffers[s] = new double[bufferLength];
+			}
+			slots = new double[stackSize][];
+		}
+	}
+
+	protected double[][] argumentBuffer(int arity) {
+		if (arity >= arguments.length) {
+			arguments = Arrays.copyOf(arguments, arity + 1);
+		}
+		if (arguments[arity] == null) {
+			arguments[arity] = new double[arity][];
+		}
+		return arguments[arity];
+	}
+}
@@ -0,0 +1,7 @@
+package core;
+
+// implemented by the classes generated at runtime by the JitCompiler
+public interface CompiledEvaluator {
+
+	double eval(double[] row);
+}
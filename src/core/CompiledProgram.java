@@ -0,0 +1,242 @@
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import programElements.Addition;
+import programElements.Constant;
+import programElements.InputVariable;
+import programElements.LogisticFunction;
+import programElements.Multiplication;
+import programElements.Operator;
+import programElements.ProgramElement;
+import programElements.ProtectedDivision;
+import programElements.Sine;
+import programElements.Subtraction;
+import utils.Utils;
+
+// flat stack machine representation of a prefix program, compiled once and evaluated without allocations
+public class CompiledProgram implements Serializable {
+
+	private static final long serialVersionUID = 7L;
+
+	public static final int CONSTANT = 0;
+	public static final int VARIABLE = 1;
+	public static final int ADDITION = 2;
+	public static final int SUBTRACTION = 3;
+	public static final int MULTIPLICATION = 4;
+	public static final int PROTECTED_DIVISION = 5;
+	public static final int LOGISTIC_FUNCTION = 6;
+	public static final int SINE = 7;
+	public static final int GENERIC_OPERATOR = 8;
+
+	// instructions are stored in execution order, which is the prefix program reversed:
+	// the first argument of an operator is always on top of the stack when the operator is executed
+	protected int[] opcodes;
+	// variable index for VARIABLE, index into operators for GENERIC_OPERATOR
+	protected int[] operands;
+	// value for CONSTANT
+	protected double[] constants;
+	protected Operator[] operators;
+	protected int maximumStackSize;
+
+	// preallocated evaluation buffers (one evaluation at a time per compiled program),
+	// argument buffers are indexed by arity because performOperation expects arrays of exact length
+	protected transient double[] stack;
+	protected transient double[][] arguments;
+
+	protected transient int hash;
+
+	protected CompiledProgram(int length) {
+		opcodes = new int[length];
+		operands = new int[length];
+		constants = new double[length];
+	}
+
+	public static CompiledProgram compile(List<ProgramElement> program) {
+		return compile(program, 0, program.size());
+	}
+
+	// compiles the elements [start, end[ of a prefix program, which have to form a complete subtree
+	public static CompiledProgram compile(List<ProgramElement> program, int start, int end) {
+		int length = end - start;
+		CompiledProgram compiled = new CompiledProgram(length);
+		int numberOfGenericOperators = 0;
+		for (int i = start; i < end; i++) {
+			ProgramElement element = program.get(i);
+			if (element instanceof Operator && opcodeOf((Operator) element) == GENERIC_OPERATOR) {
+				numberOfGenericOperators++;
+			}
+		}
+		compiled.operators = new Operator[numberOfGenericOperators];
+
+		int stackSize = 0;
+		int genericIndex = 0;
+		for (int k = 0; k < length; k++) {
+			ProgramElement element = program.get(end - 1 - k);
+			if (element instanceof InputVariable) {
+				compiled.opcodes[k] = VARIABLE;
+				compiled.operands[k] = ((InputVariable) element).getVariableIndex();
+				stackSize++;
+			} else if (element instanceof Constant) {
+				compiled.opcodes[k] = CONSTANT;
+				compiled.constants[k] = ((Constant) element).getValue();
+				stackSize++;
+			} else {
+				Operator operator = (Operator) element;
+				int opcode = opcodeOf(operator);
+				compiled.opcodes[k] = opcode;
+				if (opcode == GENERIC_OPERATOR) {
+					compiled.operands[k] = genericIndex;
+					compiled.operators[genericIndex++] = operator;
+				}
+				stackSize -= operator.getArity() - 1;
+			}
+			compiled.maximumStackSize = Math.max(compiled.maximumStackSize, stackSize);
+		}
+		if (stackSize != 1) {
+			throw new IllegalArgumentException("Program elements [" + start + ", " + end + "[ do not form a complete tree");
+		}
+		compiled.allocateBuffers();
+		return compiled;
+	}
+
+	protected static int opcodeOf(Operator operator) {
+		if (operator instanceof Addition) {
+			return ADDITION;
+		} else if (operator instanceof Subtraction) {
+			return SUBTRACTION;
+		} else if (operator instanceof Multiplication) {
+			return MULTIPLICATION;
+		} else if (operator instanceof ProtectedDivision) {
+			return PROTECTED_DIVISION;
+		} else if (operator instanceof LogisticFunction) {
+			return LOGISTIC_FUNCTION;
+		} else if (operator instanceof Sine) {
+			return SINE;
+		}
+		return GENERIC_OPERATOR;
+	}
+
+	public double[] evaluate(double[][] data) {
+		double[] outputs = new double[data.length];
+		for (int i = 0; i < outputs.length; i++) {
+			outputs[i] = evaluate(data[i]);
+		}
+		return outputs;
+	}
+
+	public double evaluate(double[] dataInstance) {
+		if (stack == null) {
+			allocateBuffers();
+		}
+		double[] stack = this.stack;
+		int top = 0;
+		for (int k = 0; k < opcodes.length; k++) {
+			switch (opcodes[k]) {
+				case CONSTANT:
+					stack[top++] = constants[k];
+					break;
+				case VARIABLE:
+					stack[top++] = dataInstance[operands[k]];
+					break;
+				case ADDITION:
+					top--;
+					stack[top - 1] = stack[top] + stack[top - 1];
+					break;
+				case SUBTRACTION:
+					top--;
+					stack[top - 1] = stack[top] - stack[top - 1];
+					break;
+				case MULTIPLICATION:
+					top--;
+					stack[top - 1] = stack[top] * stack[top - 1];
+					break;
+				case PROTECTED_DIVISION:
+					top--;
+					if (Math.abs(stack[top - 1]) < ProtectedDivision.MINIMUM_DENOMINATOR_VALUE) {
+						stack[top - 1] = stack[top];
+					} else {
+						stack[top - 1] = stack[top] / stack[top - 1];
+					}
+					break;
+				case LOGISTIC_FUNCTION:
+					stack[top - 1] = Utils.logisticFunction(stack[top - 1]);
+					break;
+				case SINE:
+					stack[top - 1] = Math.sin(stack[top - 1]);
+					break;
+				default:
+					Operator operator = operators[operands[k]];
+					double[] operatorArguments = arguments[operator.getArity()];
+					for (int a = 0; a < operatorArguments.length; a++) {
+						operatorArguments[a] = stack[top - 1 - a];
+					}
+					top -= operatorArguments.length;
+					stack[top++] = operator.performOperation(operatorArguments);
+			}
+		}
+		return stack[0];
+	}
+
+	protected void allocateBuffers() {
+		stack = new double[maximumStackSize];
+		int maximumArity = 0;
+		for (Operator operator : operators) {
+			maximumArity = Math.max(maximumArity, operator.getArity());
+		}
+		arguments = new double[maximumArity + 1][];
+		for (int a = 0; a <= maximumArity; a++) {
+			arguments[a] = new double[a];
+		}
+	}
+
+	// two compiled programs are equal if they are structurally identical
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof CompiledProgram)) {
+			return false;
+		}
+		CompiledProgram program = (CompiledProgram) other;
+		return hashCode() == program.hashCode() && Arrays.equals(opcodes, program.opcodes)
+				&& Arrays.equals(operands, program.operands) && Arrays.equals(constants, program.constants)
+				&& Arrays.equals(operators, program.operators);
+	}
+
+	public int hashCode() {
+		if (hash == 0) {
+			int h = Arrays.hashCode(opcodes);
+			h = 31 * h + Arrays.hashCode(operands);
+			h = 31 * h + Arrays.hashCode(constants);
+			hash = h == 0 ? 1 : h;
+		}
+		return hash;
+	}
+
+	public int getLength() {
+		return opcodes.length;
+	}
+
+	public int getMaximumStackSize() {
+		return maximumStackSize;
+	}
+
+	public int getOpcode(int k) {
+		return opcodes[k];
+	}
+
+	public int getOperand(int k) {
+		return operands[k];
+	}
+
+	public double getConstant(int k) {
+		return constants[k];
+	}
+
+	public Operator getOperator(int k) {
+		return operators[operands[k]];
+	}
+}
@@ -6,7 +6,18 @@ public class Data implements Serializable {
 
 	private static final long serialVersionUID = 7L;
 
+	public static final int TRAINING = 0;
+	public static final int VALIDATION = 1;
+	public static final int UNSEEN = 2;
+
 	protected double[][] trainingData, validationData, unseenData, completeTrainingData;
+	// all training rows while the training data is restricted to a subset of them (null otherwise)
+	protected double[][] fullTrainingData;
+
+	// column major copies of the data sets (indexed by TRAINING, VALIDATION, UNSEEN), built on demand
+	protected transient double[][][] columns;
+	// incremented whenever one of the data sets is replaced
+	protected transient long modificationCount;
 
 	public Data(double[][] trainingData, double[][] unseenData) {
 		this.trainingData = trainingData;
@@ -27,6 +38,14 @@ public class Data implements Serializable {
 		return trainingData;
 	}
 
+	public double[][] getFullTrainingData() {
+		return fullTrainingData != null ? fullTrainingData : trainingData;
+	}
+
+	public boolean isTrainingSubset() {
+		return fullTrainingData != null;
+	}
+
 	public double[][] getValidationData() {
 		return validationData;
 	}
@@ -35,20 +54,80 @@ public class Data implements Serializable {
 		return unseenData;
 	}
 
+	public double[][] getData(int split) {
+		switch (split) {
+			case TRAINING:
+				return trainingData;
+			case VALIDATION:
+				return validationData;
+			case UNSEEN:
+				return unseenData;
+		}
+		return null;
+	}
+
+	public double[][] getColumns(int split) {
+		if (columns == null) {
+			columns = new double[3][][];
+		}
+		if (columns[split] == null && getData(split) != null) {
+			columns[split] = transpose(getData(split));
+		}
+		return columns[split];
+	}
+
+	protected static double[][] transpose(double[][] rows) {
+		int numberOfColumns = rows.length == 0 ? 0 : rows[0].length;
+		double[][] transposed = new double[numberOfColumns][rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			for (int k = 0; k < numberOfColumns; k++) {
+				transposed[k][i] = rows[i][k];
+			}
+		}
+		return transposed;
+	}
+
+	protected void dataChanged(int split) {
+		if (columns != null) {
+			columns[split] = null;
+		}
+		modificationCount++;
+	}
+
+	public long getModificationCount() {
+		return modificationCount;
+	}
+
 	public double[][] getCompleteTrainingData() {
 		return completeTrainingData;
 	}
 
 	public void setTrainingData(double[][] trainingData) {
 		this.trainingData = trainingData;
+		this.fullTrainingData = null;
+		dataChanged(TRAINING);
+	}
+
+	// restricts the training data to the given rows of the full training data
+	public void setTrainingSubset(int[] rows) {
+		double[][] full = getFullTrainingData();
+		double[][] subset = new double[rows.length][];
+		for (int i = 0; i < rows.length; i++) {
+			subset[i] = full[rows[i]];
+		}
+		this.trainingData = subset;
+		this.fullTrainingData = full;
+		dataChanged(TRAINING);
 	}
 
 	public void setValidationData(double[][] validationData) {
 		this.validationData = validationData;
+		dataChanged(VALIDATION);
 	}
 
 	public void setUnseenData(double[][] unseenData) {
 		this.unseenData = unseenData;
+		dataChanged(UNSEEN);
 	}
 	public void setCompleteTrainingData(double[][] data) {
 		this.completeTrainingData = data;
@@ -0,0 +1,104 @@
+package core;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// outputs and errors of complete programs, so structurally identical offspring are not evaluated again
+public class FitnessCache {
+
+	protected static class Entry {
+		protected double[] trainingDataOutputs, validationDataOutputs;
+		protected double trainingError, validationError;
+	}
+
+	// programs evaluated in the current generation, cleared by nextGeneration()
+	protected HashMap<CompiledProgram, Entry> generationEntries = new HashMap<CompiledProgram, Entry>();
+	// least recently used programs of the whole run
+	protected LinkedHashMap<CompiledProgram, Entry> runEntries;
+
+	protected long generationHits, runHits, misses;
+
+	// outputs are only valid for the data they were computed on
+	protected Data data;
+	protected long dataModificationCount;
+
+	public FitnessCache(final int maximumSize) {
+		runEntries = new LinkedHashMap<CompiledProgram, Entry>(1024, 0.75f, true) {
+			private static final long serialVersionUID = 7L;
+
+			protected boolean removeEldestEntry(Map.Entry<CompiledProgram, Entry> eldest) {
+				return size() > maximumSize;
+			}
+		};
+	}
+
+	public void nextGeneration() {
+		generationEntries.clear();
+	}
+
+	public void clear() {
+		generationEntries.clear();
+		runEntries.clear();
+	}
+
+	protected void validate(Data data) {
+		if (this.data != data || dataModificationCount != data.getModificationCount()) {
+			clear();
+			this.data = data;
+			dataModificationCount = data.getModificationCount();
+		}
+	}
+
+	// copies the results of an identical program into the individual, returns false if there are none
+	public boolean lookup(Individual individual, Data data) {
+		validate(data);
+		CompiledProgram program = individual.getCompiledProgram();
+		Entry entry = generationEntries.get(program);
+		if (entry != null) {
+			generationHits++;
+		} else {
+			entry = runEntries.get(program);
+			if (entry == null) {
+				misses++;
+				return false;
+			}
+			runHits++;
+			generationEntries.put(program, entry);
+		}
+		// output arrays are shared, they are never modified in place
+		individual.trainingDataOutputs = entry.trainingDataOutputs;
+		individual.validationDataOutputs = entry.validationDataOutputs;
+		individual.trainingError = entry.trainingError;
+		individual.validationError = entry.validationError;
+		return true;
+	}
+
+	public void put(Individual individual, Data data) {
+		validate(data);
+		Entry entry = new Entry();
+		entry.trainingDataOutputs = individual.trainingDataOutputs;
+		entry.validationDataOutputs = individual.validationDataOutputs;
+		entry.trainingError = individual.trainingError;
+		entry.validationError = individual.validationError;
+		CompiledProgram program = individual.getCompiledProgram();
+		generationEntries.put(program, entry);
+		runEntries.put(program, entry);
+	}
+
+	public long getGenerationHits() {
+		return generationHits;
+	}
+
+	public long getRunHits() {
+		return runHits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public int getSize() {
+		return runEntries.size();
+	}
+}
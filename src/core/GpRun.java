@@ -4,9 +4,11 @@ import utils.Utils;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 import programElements.Addition;
+import programElements.ArrayKernels;
 import programElements.Constant;
 import programElements.InputVariable;
 import programElements.Multiplication;
@@ -19,6 +21,9 @@ public class GpRun implements Serializable {
 
 	private static final long serialVersionUID = 7L;
 
+	// maximum depth of the random trees used by the variation operators
+	protected static final int RANDOM_TREE_DEPTH = 6;
+
 	// ##### parameters #####
 	protected Data data;
 	protected int id;
@@ -49,14 +54,21 @@ public class GpRun implements Serializable {
 	protected boolean repulseWithValidationOnly = false;
 	protected int divideAndReshuffle = 0;
 	protected double validationSetSize = 0;
+	protected double earlyAbortFraction = 0;
+	protected int subsampleSize = 0;
+	protected int subsampleRotation = 1;
+	protected int randomTreePoolSize = 0;
+	protected boolean rankSelection = false;
 
 	// ##### state #####
 	protected Random randomGenerator;
 	protected int currentGeneration;
 	protected Population population;
-	protected Population validationPool;
+	protected ValidationPool validationPool;
 	protected Individual currentBest;
 	protected double currentSteepness;
+	protected RandomTreePool randomTreePool;
+	protected TournamentSelector tournamentSelector;
 
 	public GpRun(Data data) {
 		this.data = data;
@@ -100,10 +112,22 @@ public class GpRun implements Serializable {
 		}
 
 		randomGenerator = new Random();
+		tournamentSelector = new TournamentSelector(randomGenerator);
 		currentGeneration = 0;
 		currentSteepness = 0;
 
-		validationPool = new Population(this.trueParetoSelection, this.dominationExcludeFitness, this.mergeRepulsors);
+		validationPool = new ValidationPool(useValidationWorst ? validationWorstSize : validationEliteSize);
+
+		if (Individual.batchEvaluation)
+			Utils.log(Utils.LogTag.LOG, "Batch evaluation uses " + ArrayKernels.get().getName() + " kernels");
+
+		if (subsampleSize > 0)
+			drawTrainingSubset();
+
+		if (randomTreePoolSize > 0) {
+			randomTreePool = new RandomTreePool(this, randomTreePoolSize, RANDOM_TREE_DEPTH, needsRandomTreeSemantics(), randomGenerator.nextLong());
+			randomTreePool.refresh(data);
+		}
 
 		// initialize and evaluate population
 		rampedHalfAndHalfInitialization();
@@ -191,31 +215,49 @@ public class GpRun implements Serializable {
 	}
 
 	protected Individual grow(int maximumTreeDepth) {
+		return grow(maximumTreeDepth, randomGenerator);
+	}
+
+	// also used by the random tree pool from its background thread, with its own random generator
+	protected Individual grow(int maximumTreeDepth, Random random) {
 		Individual individual = new Individual();
-		growInner(individual, 0, maximumTreeDepth);
+		growInner(individual, 0, maximumTreeDepth, random);
 		individual.calculateDepth();
 		return individual;
 	}
 
-	protected void growInner(Individual individual, int currentDepth, int maximumTreeDepth) {
+	protected void growInner(Individual individual, int currentDepth, int maximumTreeDepth, Random random) {
 		if (currentDepth == maximumTreeDepth) {
-			ProgramElement randomTerminal = terminalSet.get(randomGenerator.nextInt(terminalSet.size()));
+			ProgramElement randomTerminal = terminalSet.get(random.nextInt(terminalSet.size()));
 			individual.addProgramElement(randomTerminal);
 		} else {
 			// equal probability of adding a terminal or an operator
-			if (randomGenerator.nextBoolean()) {
-				Operator randomOperator = (Operator) functionSet.get(randomGenerator.nextInt(functionSet.size()));
+			if (random.nextBoolean()) {
+				Operator randomOperator = (Operator) functionSet.get(random.nextInt(functionSet.size()));
 				individual.addProgramElement(randomOperator);
 				for (int i = 0; i < randomOperator.getArity(); i++) {
-					growInner(individual, currentDepth + 1, maximumTreeDepth);
+					growInner(individual, currentDepth + 1, maximumTreeDepth, random);
 				}
 			} else {
-				ProgramElement randomTerminal = terminalSet.get(randomGenerator.nextInt(terminalSet.size()));
+				ProgramElement randomTerminal = terminalSet.get(random.nextInt(terminalSet.size()));
 				individual.addProgramElement(randomTerminal);
 			}
 		}
 	}
 
+	// random trees for the variation operators, taken from the pool if there is one
+	protected Individual drawRandomTree(int maximumTreeDepth) {
+		if (randomTreePool != null) {
+			return randomTreePool.getTree(randomTreePool.draw(randomGenerator));
+		}
+		return grow(maximumTreeDepth);
+	}
+
+	// whether the variation operators use the outputs of the pooled random trees
+	protected boolean needsRandomTreeSemantics() {
+		return false;
+	}
+
 	public void evolve(int numberOfGenerations) {
 		Utils.log(Utils.LogTag.LOG, "Starting Evolution (" + numberOfGenerations +" Generations)");
 
@@ -226,12 +268,32 @@ public class GpRun implements Serializable {
 			// shuffle and divide
 			if (divideAndReshuffle > 0 && (currentGeneration == 1 || currentGeneration % divideAndReshuffle == 0)){
 				data = Utils.remakeValidation(data, true, validationSetSize, 0.8);
-				// reevaluate population
+				if (subsampleSize > 0)
+					drawTrainingSubset();
+				// reevaluate population (semantics-only GSGP offspring can't be, Main does not allow reshuffling for them)
+				for (int i = 0; i < population.getSize(); i++){
+					population.getIndividual(i).reevaluate(data);
+				}
+				// repulsor distances are only meaningful on the rows of the current training subset
+				if (subsampleSize > 0)
+					population.reevaluateRepulsors(data);
+				else
+					population.updateRepulsors();
+				validationPool.update();
+				Utils.log(Utils.LogTag.LOG,"Remade Validation Data: "+data.getFullTrainingData().length+" Training Instances " + data.getValidationData().length+" Validation Instances");
+			}
+			// rotate the training subset, the parents and repulsors are evaluated on the new rows so that they are
+			// compared to the offspring on the same rows (semantics-only GSGP offspring can't be, Main does not allow
+			// subsampling for them)
+			else if (subsampleSize > 0 && currentGeneration % subsampleRotation == 0){
+				drawTrainingSubset();
 				for (int i = 0; i < population.getSize(); i++){
-					population.getIndividual(i).evaluate(data);
+					population.getIndividual(i).reevaluate(data);
 				}
-				Utils.log(Utils.LogTag.LOG,"Remade Validation Data: "+data.getTrainingData().length+" Training Instances " + data.getValidationData().length+" Validation Instances");
+				population.reevaluateRepulsors(data);
 			}
+			if (randomTreePool != null)
+				randomTreePool.refresh(data);
 
 
 			Population offspring = new Population(this.trueParetoSelection, this.dominationExcludeFitness, this.mergeRepulsors);
@@ -240,7 +302,15 @@ public class GpRun implements Serializable {
 				offspring.repulsors = population.repulsors;
 			offspring.setFitnessMemory(population.getFitnessMemory());
 
+			if (Individual.getFitnessCache() != null)
+				Individual.getFitnessCache().nextGeneration();
 			int newReps = 0;
+			// offspring that can not reach the best fraction of the current population are not evaluated to the end
+			double trainingErrorThreshold = Double.POSITIVE_INFINITY;
+			if (earlyAbortFraction > 0)
+				trainingErrorThreshold = population.getFitnessQuantile("training", earlyAbortFraction);
+			int abortedCount = 0;
+			tournamentSelector.prepare(population);
 			// generate a new offspring population
 			int recreatedCount = 0;
 			while (offspring.getSize() < population.getSize()) {
@@ -266,7 +336,9 @@ public class GpRun implements Serializable {
 					if (applyDepthLimit && newIndividual.getDepth() > maximumDepth) {
 						newIndividual = p1;
 					} else {
-						newIndividual.evaluate(data);
+						newIndividual.evaluate(data, trainingErrorThreshold);
+						if (newIndividual.isTrainingErrorBounded())
+							abortedCount++;
 					}
 					if (!first_try){
 						recreatedCount++;
@@ -281,7 +353,7 @@ public class GpRun implements Serializable {
 				newIndividual.setIsOverfitting(isOverfitting(newIndividual));
 				newIndividual.setOverfitSeverity(getOverfittingSeverity(newIndividual));
 				if ((currentGeneration >= repulsorMinAge) && useBestAsRepCandidate < 1 && newIndividual.getIsOverfitting()){
-					offspring.addRepulsor(newIndividual, repulsorMaxNumber, false, equalityDelta);//, useValidationWorst);
+					addRepulsor(offspring, newIndividual);
 				}
 			}
 
@@ -314,7 +386,7 @@ public class GpRun implements Serializable {
 			// handle new repulser candidates
 			Individual candidate = population.getBest();
 			if ((currentGeneration >= repulsorMinAge) && useBestAsRepCandidate == 1 && candidate.getIsOverfitting()){
-				if (population.addRepulsor(candidate, repulsorMaxNumber, false, equalityDelta)){//, useValidationWorst)){
+				if (addRepulsor(population, candidate)){
 					Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+": Added 1 new repulsor (best was found to overfit) (Total: "+population.repulsors.size()+")");
 				} else {
 					Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+": 1 new candidate repulser was discarded"+"(Total: "+population.repulsors.size()+")");
@@ -328,7 +400,7 @@ public class GpRun implements Serializable {
 					ind.setIsOverfitting(isOverfitting(ind));
 					if (ind.getIsOverfitting()){
 						ind.setOverfitSeverity(getOverfittingSeverity(ind));
-						if (population.addRepulsor(ind, repulsorMaxNumber, false, equalityDelta))//, useValidationWorst))
+						if (addRepulsor(population, ind))
 							used++;
 					}
 				}
@@ -337,13 +409,35 @@ public class GpRun implements Serializable {
 			if (this.forceAvoidRepulsors && population.getRepulsorsSize() > 0)
 				Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+":Individuals recreated due to equality to any repulser during variation phase: " + recreatedCount);
 
-			Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+": Validation Pool Average Fitness (validation) = "+validationPool.getAverageFitness("validation"));
+			if (earlyAbortFraction > 0)
+				Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+": Early aborted training evaluations = "+abortedCount+" (threshold = "+Utils.format(trainingErrorThreshold)+")");
+			Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+": Validation Pool Average Fitness (validation) = "+validationPool.getAverageFitness());
+			if (Individual.getSemanticsCache() != null){
+				SemanticsCache cache = Individual.getSemanticsCache();
+				Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+": Semantics cache hit rate = "+Utils.format(cache.getHitRate())+" ("+cache.getHits()+" hits, "+cache.getMisses()+" misses), entries = "+cache.getSize()+", bytes used = "+cache.getBytes());
+			}
+			if (Individual.getFitnessCache() != null){
+				FitnessCache cache = Individual.getFitnessCache();
+				Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+": Fitness cache hits = "+cache.getGenerationHits()+" (generation) + "+cache.getRunHits()+" (run), misses = "+cache.getMisses()+", entries = "+cache.getSize());
+			}
+			if (Individual.getSimplifier() != null){
+				ProgramSimplifier simplifier = Individual.getSimplifier();
+				long removed = simplifier.getInputElements() - simplifier.getOutputElements();
+				Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+": Simplification removed "+removed+" of "+simplifier.getInputElements()+" program elements (reduction = "+Utils.format((double) removed / Math.max(1, simplifier.getInputElements()))+")");
+				simplifier.resetStatistics();
+			}
+			if (Individual.getJitCompiler() != null){
+				JitCompiler jit = Individual.getJitCompiler();
+				Utils.log(Utils.LogTag.LOG, "Gen "+currentGeneration+": JIT compiled programs = "+jit.getCompilations()+", compiled evaluations = "+jit.getCompiledEvaluations()+", cached programs = "+jit.getCacheSize());
+			}
 			// finish generation
 			updateSteepness(currentBest);
 			printState();
 			currentGeneration++;
 		}
 
+		if (randomTreePool != null)
+			randomTreePool.shutdown();
 		Utils.log(Utils.LogTag.LOG, "Finished Evolution");
 	}
 
@@ -369,9 +463,9 @@ public class GpRun implements Serializable {
 				+";"+Utils.format(currentBest.getSize())+";"+Utils.format(currentBest.getDepth())
 				+";"+blindBest.getId()+";"+Utils.format(blindBest.getValidationError())+";"+Utils.format(blindBest.getSize())+";"+Utils.format(blindBest.getDepth()));
 			// training data
-			Utils.log(Utils.LogTag.FITNESSTRAIN, ""+id+";"+currentGeneration+";"+currentBest.getId()+";"+Utils.format(currentBest.getTrainingError())+";"+Utils.format(currentBest.getSize())+";"+Utils.format(currentBest.getDepth())
+			Utils.log(Utils.LogTag.FITNESSTRAIN, ""+id+";"+currentGeneration+";"+currentBest.getId()+";"+Utils.format(currentBest.getFullTrainingError())+";"+Utils.format(currentBest.getSize())+";"+Utils.format(currentBest.getDepth())
 					+";"+Utils.format(currentBest.getRank()) + ";"+Utils.format(population.getRepulsorsSize())
-					+";"+blindBest.getId()+";"+Utils.format(blindBest.getTrainingError())+";"+Utils.format(blindBest.getSize())+";"+Utils.format(blindBest.getDepth())
+					+";"+blindBest.getId()+";"+Utils.format(blindBest.getFullTrainingError())+";"+Utils.format(blindBest.getSize())+";"+Utils.format(blindBest.getDepth())
 					+";"+Utils.format(blindBest.getRank()));
 			// log repulser distances
 			for (int r = 0; r < population.getRepulsorsSize(); r++){
@@ -427,27 +521,22 @@ public class GpRun implements Serializable {
 		}
 	}
 
-	// tournament selection
+	// tournament selection (on the errors and ranks captured by tournamentSelector.prepare)
 	protected Individual selectParent(int generation) {
-		Population tournamentPopulation = new Population(this.trueParetoSelection, this.dominationExcludeFitness, this.mergeRepulsors);
 		// int tournamentSize = (int) (0.05 * population.getSize());
 		if (tournamentSize == 0) tournamentSize = 1;
-		for (int i = 0; i < tournamentSize; i++) {
-			int index = randomGenerator.nextInt(population.getSize());
-			tournamentPopulation.addIndividual(population.getIndividual(index));
-		}
-		if (repulsorMinAge < generation-1 && population.getRepulsorsSize() > 0) {
-			return tournamentPopulation.getNonDominatedBest();
+		if (rankSelection && repulsorMinAge < generation-1 && population.getRepulsorsSize() > 0) {
+			return population.getIndividual(tournamentSelector.selectNonDominated(tournamentSize, trueParetoSelection));
 		} else {
-			return tournamentPopulation.getBest();
+			return population.getIndividual(tournamentSelector.select(tournamentSize));
 		}
 	}
 
 	protected Individual applyStandardCrossover(Individual p1, Individual p2) {
 
-		int p1CrossoverStart = randomGenerator.nextInt(p1.getSize());
+		int p1CrossoverStart = randomGenerator.nextInt((int) p1.getSize());
 		int p1ElementsToEnd = p1.countElementsToEnd(p1CrossoverStart);
-		int p2CrossoverStart = randomGenerator.nextInt(p2.getSize());
+		int p2CrossoverStart = randomGenerator.nextInt((int) p2.getSize());
 		int p2ElementsToEnd = p2.countElementsToEnd(p2CrossoverStart);
 
 		Individual offspring = p1.selectiveDeepCopy(p1CrossoverStart, p1CrossoverStart + p1ElementsToEnd - 1);
@@ -458,16 +547,17 @@ public class GpRun implements Serializable {
 		}
 
 		offspring.calculateDepth();
+		offspring.setVariationOrigin(p1, p1CrossoverStart, p1ElementsToEnd, p2, p2CrossoverStart, p2ElementsToEnd);
 		return offspring;
 	}
 
 	protected Individual applyStandardMutation(Individual p) {
 
-		int mutationPoint = randomGenerator.nextInt(p.getSize());
+		int mutationPoint = randomGenerator.nextInt((int) p.getSize());
 		int parentElementsToEnd = p.countElementsToEnd(mutationPoint);
 		Individual offspring = p.selectiveDeepCopy(mutationPoint, mutationPoint + parentElementsToEnd - 1);
-		int maximumDepth = 6;
-		Individual randomTree = grow(maximumDepth);
+		int maximumDepth = RANDOM_TREE_DEPTH;
+		Individual randomTree = drawRandomTree(maximumDepth);
 
 		// add the random tree to the offspring
 		for (int i = 0; i < randomTree.getSize(); i++) {
@@ -475,12 +565,43 @@ public class GpRun implements Serializable {
 		}
 
 		offspring.calculateDepth();
+		offspring.setVariationOrigin(p, mutationPoint, parentElementsToEnd, randomTree, 0, (int) randomTree.getSize());
 		return offspring;
 	}
 
 	protected void updateCurrentBest() {
 		//currentBest = population.getBest();
 		currentBest = population.getBestNotOverfitting();
+		// reported individuals are evaluated on all training rows
+		if (subsampleSize > 0){
+			currentBest.evaluateFullTrainingError(data);
+			population.getBest().evaluateFullTrainingError(data);
+		}
+	}
+
+	// draws the training rows (without replacement) the individuals are evaluated on until the next rotation
+	protected void drawTrainingSubset() {
+		int numberOfRows = data.getFullTrainingData().length;
+		int[] rows = new int[numberOfRows];
+		for (int i = 0; i < numberOfRows; i++) {
+			rows[i] = i;
+		}
+		int size = Math.min(subsampleSize, numberOfRows);
+		for (int i = 0; i < size; i++) {
+			int j = i + randomGenerator.nextInt(numberOfRows - i);
+			int row = rows[i];
+			rows[i] = rows[j];
+			rows[j] = row;
+		}
+		data.setTrainingSubset(Arrays.copyOf(rows, size));
+	}
+
+	protected boolean addRepulsor(Population population, Individual individual){
+		boolean added = population.addRepulsor(individual, repulsorMaxNumber, false, equalityDelta);
+		// merged repulsors have new validation errors and might be in the validation pool
+		if (added && mergeRepulsors)
+			validationPool.update();
+		return added;
 	}
 
 	protected void tryAddToValidationPool(Individual individual){
@@ -489,9 +610,8 @@ public class GpRun implements Serializable {
 				validationPool.addIndividual(individual);
 			} else {
 				// replace worst individual in the pool
-				int worstIdx = validationPool.getWorstIndex("validation");
-				if (individual.getValidationError() < validationPool.getIndividual(worstIdx).getValidationError()){
-					validationPool.removeIndividual(worstIdx);
+				if (individual.getValidationError() < validationPool.getWorstFitness()){
+					validationPool.removeWorst();
 					validationPool.addIndividual(individual);
 				}
 			}
@@ -500,9 +620,8 @@ public class GpRun implements Serializable {
 				validationPool.addIndividual(individual);
 			} else {
 				// replace best individual in the pool
-				int bestIdx = validationPool.getBestIndex("validation");
-				if (individual.getValidationError() > validationPool.getIndividual(bestIdx).getValidationError()){
-					validationPool.removeIndividual(bestIdx);
+				if (individual.getValidationError() > validationPool.getBestFitness()){
+					validationPool.removeBest();
 					validationPool.addIndividual(individual);
 				}
 			}
@@ -515,20 +634,20 @@ public class GpRun implements Serializable {
 			if (validationPool.getSize() < validationEliteSize)
 				return false;
 			else if (overfitByMedian)
-				return individual.getValidationError() > validationPool.getMedianFitness("validation");
+				return individual.getValidationError() > validationPool.getMedianFitness();
 			else
-				return individual.getValidationError() > validationPool.getAverageFitness("validation");
+				return individual.getValidationError() > validationPool.getAverageFitness();
 		} else if (useOverfitByNSightedSteepness == 0){
 			// check if equal to median/average of validation worst (equal is within 1.5 standard deviations)
 			double threshold = 0;
-			double std = validationPool.getStandardDeviation("validation");
+			double std = validationPool.getStandardDeviation();
 			if (validationPool.getSize() < validationWorstSize)
 				return false;
 			else if (overfitByMedian)
-				threshold = validationPool.getMedianFitness("validation");
+				threshold = validationPool.getMedianFitness();
 			else
-				threshold = validationPool.getAverageFitness("validation");
-				//return individual.getValidationError() > validationPool.getAverageFitness("validation");
+				threshold = validationPool.getAverageFitness();
+				//return individual.getValidationError() > validationPool.getAverageFitness();
 			
 			return (Math.abs(threshold - individual.getValidationError()) < 1.5*std);
 		} else if (useOverfitByNSightedSteepness > 0){
@@ -554,33 +673,26 @@ public class GpRun implements Serializable {
 	}
 
 	protected boolean isEqualToAnyRepulsor(Individual ind){
-		// compute distance to all repulsers, if one of them is smaller then equalit delta, return false
-		for (int i = 0; i < population.getRepulsorsSize(); i++){
-			Individual repulsor = population.getRepulsor(i);
-			double d = ind.calculateCombinedSemanticDistance(repulsor.getTrainingDataOutputs(), repulsor.getValidationDataOutputs());
-			if (d < population.getCombinedMaximumDistance()*this.equalityDelta){
-				return true;
-			}
-		}
-		return false;
+		// whether any repulser is closer than the equality delta (found through the index of the repulsors)
+		return population.isCloserToAnyRepulsorThan(ind, population.getCombinedMaximumDistance()*this.equalityDelta);
 	}
 
 	protected double getOverfittingSeverity(Individual individual){
 		if (!useValidationWorst){
 			double valFit=0;
 			if (overfitByMedian)
-				valFit = validationPool.getMedianFitness("validation");
+				valFit = validationPool.getMedianFitness();
 			else
-				valFit = validationPool.getAverageFitness("validation");
+				valFit = validationPool.getAverageFitness();
 			return valFit-individual.getValidationError();
 		} else if (useOverfitByNSightedSteepness == 0){
 			double threshold = 0;
-			double std = validationPool.getStandardDeviation("validation");
+			double std = validationPool.getStandardDeviation();
 			if (overfitByMedian)
-				threshold = validationPool.getMedianFitness("validation");
+				threshold = validationPool.getMedianFitness();
 			else
-				threshold = validationPool.getAverageFitness("validation");
-				//return individual.getValidationError() > validationPool.getAverageFitness("validation");
+				threshold = validationPool.getAverageFitness();
+				//return individual.getValidationError() > validationPool.getAverageFitness();
 			
 			return (threshold - individual.getValidationError())/(1.5*std);
 			// return -1 * individual.getValidationError();
@@ -767,4 +879,63 @@ public class GpRun implements Serializable {
 	public void setValidationSetSize(double n){
 		this.validationSetSize = n;
 	};
+	public void setBatchEvaluation(boolean flag){
+		Individual.setBatchEvaluation(flag);
+	};
+	public void setIncrementalEvaluation(boolean flag){
+		Individual.setIncrementalEvaluation(flag);
+	};
+	public void setSemanticsCacheSize(int megabytes){
+		if (megabytes > 0)
+			Individual.setSemanticsCache(new SemanticsCache(megabytes * 1024L * 1024L));
+		else
+			Individual.setSemanticsCache(null);
+	};
+	public void setVectorKernels(boolean flag){
+		ArrayKernels.setUseVectorKernels(flag);
+	};
+	public void setFitnessCacheSize(int size){
+		if (size > 0)
+			Individual.setFitnessCache(new FitnessCache(size));
+		else
+			Individual.setFitnessCache(null);
+	};
+	public void setRankSelection(boolean flag){
+		this.rankSelection = flag;
+	};
+	public void setNonDominationSort(int algorithm){
+		Population.setNonDominationSort(algorithm);
+	};
+	public void setSortThreads(int threads){
+		Population.setSortThreads(threads);
+	};
+	public void setMaxDistanceSweeps(int sweeps){
+		Population.setMaxDistanceSweeps(sweeps);
+	};
+	public void setSketchDimensions(int dimensions){
+		if (dimensions > 0)
+			Individual.setSemanticSketch(new SemanticSketch(dimensions, new Random().nextLong()));
+		else
+			Individual.setSemanticSketch(null);
+	};
+	public void setRandomTreePoolSize(int size){
+		this.randomTreePoolSize = size;
+	};
+	public void setSubsampling(int size, int rotation){
+		this.subsampleSize = size;
+		this.subsampleRotation = Math.max(1, rotation);
+	};
+	public void setSimplification(boolean simplify, boolean simplifyGenotype){
+		Individual.setSimplifier(simplify ? new ProgramSimplifier() : null);
+		Individual.setSimplifyGenotype(simplify && simplifyGenotype);
+	};
+	public void setEarlyAbortFraction(double fraction){
+		this.earlyAbortFraction = fraction;
+	};
+	public void setJitCompilation(int compileThreshold, int sizeThreshold, int cacheSize){
+		if (compileThreshold > 0)
+			Individual.setJitCompiler(new JitCompiler(compileThreshold, sizeThreshold, cacheSize));
+		else
+			Individual.setJitCompiler(null);
+	};
 }
@@ -1,9 +1,13 @@
 package core;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import programElements.Addition;
 import programElements.Constant;
 import programElements.LogisticFunction;
 import programElements.Multiplication;
+import programElements.ProgramElement;
 import programElements.Subtraction;
 import utils.Utils;
 
@@ -11,16 +15,19 @@ public class GsgpRun extends GpRun {
 
 	private static final long serialVersionUID = 7L;
 
+	protected static final long DEFAULT_NODE_CACHE_SIZE = 256L * 1024L * 1024L;
+	// ids of random trees already written to the random tree log (pooled trees are used many times)
+	protected static final int LOGGED_RANDOM_TREES_SIZE = 4096;
+
 	protected double mutationStep;
 	protected boolean boundedMutation;
 	protected boolean buildIndividuals;
+	// stream the ancestry to the log instead of keeping it in memory
+	protected boolean ancestryLog;
+	protected transient LinkedHashMap<Long, Boolean> loggedRandomTrees;
 
 	public GsgpRun(Data data) {
 		super(data);
-	}
-
-	public void initialize() {
-		super.initialize();
 		applyDepthLimit = false;
 		mutationStep = 1.0;
 		boundedMutation = false;
@@ -29,6 +36,48 @@ public class GsgpRun extends GpRun {
 		// buildIndividuals = false;
 	}
 
+	public void initialize() {
+		// shared subtrees are only evaluated once if their outputs are cached
+		if (buildIndividuals && Individual.getSemanticsCache() == null) {
+			Individual.setSemanticsCache(new SemanticsCache(DEFAULT_NODE_CACHE_SIZE));
+		}
+		super.initialize();
+		if (ancestryLog) {
+			loggedRandomTrees = new LinkedHashMap<Long, Boolean>(1024, 0.75f, true) {
+				private static final long serialVersionUID = 7L;
+
+				protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+					return size() > LOGGED_RANDOM_TREES_SIZE;
+				}
+			};
+			for (int i = 0; i < population.getSize(); i++) {
+				Individual individual = population.getIndividual(i);
+				logRandomTree(individual);
+				Utils.logAncestry(individual.getId(), AncestryNode.INITIAL, AncestryLog.NONE, AncestryLog.NONE,
+						individual.getId(), AncestryLog.NONE, 0.0, false);
+			}
+		} else if (!buildIndividuals) {
+			// offspring built from semantics only keep a reference to how they were created
+			for (int i = 0; i < population.getSize(); i++) {
+				Individual individual = population.getIndividual(i);
+				individual.setAncestry(AncestryNode.initial(individual.getId(), individual.getProgram()));
+			}
+		}
+	}
+
+	// rebuilds the program of an individual created from semantics only
+	public Individual rebuildIndividual(Individual individual) {
+		if (individual.getAncestry() == null) {
+			return individual;
+		}
+		Individual rebuilt = new Individual();
+		for (ProgramElement programElement : individual.getAncestry().buildProgram()) {
+			rebuilt.addProgramElement(programElement);
+		}
+		rebuilt.calculateDepth();
+		return rebuilt;
+	}
+
 	protected Individual applyStandardCrossover(Individual p1, Individual p2) {
 		if (buildIndividuals) {
 			return buildCrossoverIndividual(p1, p2);
@@ -37,70 +86,68 @@ public class GsgpRun extends GpRun {
 		}
 	}
 
+	// the offspring shares the nodes of its parents and the random tree instead of copying them
 	protected Individual buildCrossoverIndividual(Individual p1, Individual p2) {
 
 		Individual offspring = new Individual();
 
-		offspring.addProgramElement(new Addition());
-		offspring.addProgramElement(new Multiplication());
-
-		// copy first parent to offspring
-		for (int i = 0; i < p1.getSize(); i++) {
-			offspring.addProgramElement(p1.getProgramElementAtIndex(i));
-		}
-
 		// create a random tree
-		int maximumInitialDepth = 6;
-		Individual randomTree = grow(maximumInitialDepth);
-
-		offspring.addProgramElement(new LogisticFunction());
-		// copy random tree to offspring
-		for (int i = 0; i < randomTree.getSize(); i++) {
-			offspring.addProgramElement(randomTree.getProgramElementAtIndex(i));
-		}
-
-		offspring.addProgramElement(new Multiplication());
-		offspring.addProgramElement(new Subtraction());
-		offspring.addProgramElement(new Constant(1.0));
-
-		offspring.addProgramElement(new LogisticFunction());
-		// copy random tree to offspring
-		for (int i = 0; i < randomTree.getSize(); i++) {
-			offspring.addProgramElement(randomTree.getProgramElementAtIndex(i));
+		int maximumInitialDepth = RANDOM_TREE_DEPTH;
+		Individual randomTreeIndividual = drawRandomTree(maximumInitialDepth);
+		ProgramNode randomTree = getProgramNode(randomTreeIndividual);
+		ProgramNode boundedRandomTree = ProgramNode.create(new LogisticFunction(), randomTree);
+
+		// p1 * lf(r) + (1 - lf(r)) * p2
+		ProgramNode first = ProgramNode.create(new Multiplication(), getProgramNode(p1), boundedRandomTree);
+		ProgramNode complement = ProgramNode.create(new Subtraction(), ProgramNode.create(new Constant(1.0)),
+				boundedRandomTree);
+		ProgramNode second = ProgramNode.create(new Multiplication(), complement, getProgramNode(p2));
+		offspring.setProgramNode(ProgramNode.create(new Addition(), first, second));
+		if (ancestryLog) {
+			logCrossover(offspring, p1, p2, randomTreeIndividual);
 		}
+		return offspring;
+	}
 
-		// copy second parent to offspring
-		for (int i = 0; i < p2.getSize(); i++) {
-			offspring.addProgramElement(p2.getProgramElementAtIndex(i));
+	// individuals built from program lists (initial population, random trees) get their node on first use
+	protected ProgramNode getProgramNode(Individual individual) {
+		if (individual.getProgramNode() == null) {
+			individual.setProgramNode(ProgramNode.fromProgram(individual.getProgram()));
 		}
-
-		offspring.calculateDepth();
-		return offspring;
+		return individual.getProgramNode();
 	}
 
 	protected Individual buildCrossoverSemantics(Individual p1, Individual p2) {
 
 		Individual offspring = new Individual();
 
-		// create a random tree and evaluate it
-		int maximumInitialDepth = 6;
-		Individual randomTree = grow(maximumInitialDepth);
-		randomTree.evaluate(data);
+		// draw a random tree from the pool or create one and evaluate it
+		int maximumInitialDepth = RANDOM_TREE_DEPTH;
+		int randomTreeIndex = drawRandomTreeIndex();
+		Individual randomTree = getEvaluatedRandomTree(randomTreeIndex, maximumInitialDepth);
 
 		// build training data semantics
 		double[] parent1TrainingSemantics = p1.getTrainingDataOutputs();
 		double[] parent2TrainingSemantics = p2.getTrainingDataOutputs();
-		double[] randomTreeTrainingSemantics = randomTree.getTrainingDataOutputs();
 		double[] offspringTrainingSemantics = buildCrossoverOffspringSemantics(parent1TrainingSemantics,
-				parent2TrainingSemantics, randomTreeTrainingSemantics);
+				parent2TrainingSemantics, getRandomTreeSemantics(randomTree, randomTreeIndex, Data.TRAINING),
+				getRandomTreeOffset(randomTreeIndex, Data.TRAINING));
 		offspring.setTrainingDataOutputs(offspringTrainingSemantics);
 
-		// build unseen data semantics
+		// build validation data semantics
+		if (data.getValidationData() != null) {
+			double[] offspringValidationSemantics = buildCrossoverOffspringSemantics(p1.getValidationDataOutputs(),
+					p2.getValidationDataOutputs(), getRandomTreeSemantics(randomTree, randomTreeIndex, Data.VALIDATION),
+					getRandomTreeOffset(randomTreeIndex, Data.VALIDATION));
+			offspring.setValidationDataOutputs(offspringValidationSemantics);
+		}
+
+		// build unseen data semantics (not deferred, the parents might not be around anymore later on)
 		double[] parent1UnseenSemantics = p1.getUnseenDataOutputs();
 		double[] parent2UnseenSemantics = p2.getUnseenDataOutputs();
-		double[] randomTreeUnseenSemantics = randomTree.getUnseenDataOutputs();
 		double[] offspringUnseenSemantics = buildCrossoverOffspringSemantics(parent1UnseenSemantics,
-				parent2UnseenSemantics, randomTreeUnseenSemantics);
+				parent2UnseenSemantics, getRandomTreeSemantics(randomTree, randomTreeIndex, Data.UNSEEN),
+				getRandomTreeOffset(randomTreeIndex, Data.UNSEEN));
 		offspring.setUnseenDataOutputs(offspringUnseenSemantics);
 
 		// calculate size and depth
@@ -108,22 +155,73 @@ public class GsgpRun extends GpRun {
 		offspring.setComputedSize(calculateCrossoverOffspringSize(p1, p2, randomTree));
 		offspring.setDepth(calculateCrossoverOffspringDepth(p1, p2, randomTree));
 
+		if (ancestryLog) {
+			logCrossover(offspring, p1, p2, randomTree);
+		} else {
+			offspring.setAncestry(AncestryNode.crossover(offspring.getId(), p1.getAncestry(), p2.getAncestry(),
+					randomTree.getProgram()));
+		}
+
 		return offspring;
 	}
 
 	protected double[] buildCrossoverOffspringSemantics(double[] parent1Semantics, double[] parent2Semantics,
 			double[] randomTreeSemantics) {
+		return buildCrossoverOffspringSemantics(parent1Semantics, parent2Semantics, randomTreeSemantics, 0);
+	}
+
+	// the random tree semantics start at the given offset (pooled semantics are stored in one array)
+	protected double[] buildCrossoverOffspringSemantics(double[] parent1Semantics, double[] parent2Semantics,
+			double[] randomTreeSemantics, int randomTreeOffset) {
 		double[] offspringSemantics = new double[parent1Semantics.length];
 		for (int i = 0; i < offspringSemantics.length; i++) {
-			double randomTreeValue = Utils.logisticFunction(randomTreeSemantics[i]);
+			double randomTreeValue = Utils.logisticFunction(randomTreeSemantics[randomTreeOffset + i]);
 			offspringSemantics[i] = (parent1Semantics[i] * randomTreeValue)
 					+ ((1.0 - randomTreeValue) * parent2Semantics[i]);
 		}
 		return offspringSemantics;
 	}
 
-	protected int calculateCrossoverOffspringSize(Individual p1, Individual p2, Individual randomTree) {
-		return p1.getSize() + p2.getSize() + randomTree.getSize() * 2 + 5;
+	// index of a pooled random tree, -1 if there is no pool
+	protected int drawRandomTreeIndex() {
+		return randomTreePool == null ? -1 : randomTreePool.draw(randomGenerator);
+	}
+
+	protected Individual getEvaluatedRandomTree(int poolIndex, int maximumTreeDepth) {
+		if (poolIndex >= 0) {
+			return randomTreePool.getTree(poolIndex);
+		}
+		Individual randomTree = grow(maximumTreeDepth);
+		randomTree.evaluate(data);
+		return randomTree;
+	}
+
+	protected double[] getRandomTreeSemantics(Individual randomTree, int poolIndex, int split) {
+		if (poolIndex >= 0) {
+			return randomTreePool.getSemantics(split);
+		}
+		switch (split) {
+			case Data.TRAINING:
+				return randomTree.getTrainingDataOutputs();
+			case Data.VALIDATION:
+				return randomTree.getValidationDataOutputs();
+			default:
+				return randomTree.getUnseenDataOutputs();
+		}
+	}
+
+	protected int getRandomTreeOffset(int poolIndex, int split) {
+		return poolIndex >= 0 ? randomTreePool.getOffset(poolIndex, split) : 0;
+	}
+
+	protected boolean needsRandomTreeSemantics() {
+		return !buildIndividuals;
+	}
+
+	protected long calculateCrossoverOffspringSize(Individual p1, Individual p2, Individual randomTree) {
+		// +, *, *, -, 1.0 and two logistic functions
+		long size = ProgramNode.addSizes(p1.getSize(), p2.getSize());
+		return ProgramNode.addSizes(size, randomTree.getSize() * 2 + 7);
 	}
 
 	protected int calculateCrossoverOffspringDepth(Individual p1, Individual p2, Individual randomTree) {
@@ -143,39 +241,27 @@ public class GsgpRun extends GpRun {
 	protected Individual buildMutationIndividual(Individual p) {
 
 		Individual offspring = new Individual();
-		offspring.addProgramElement(new Addition());
-
-		// copy parent to offspring
-		for (int i = 0; i < p.getSize(); i++) {
-			offspring.addProgramElement(p.getProgramElementAtIndex(i));
-		}
-
-		offspring.addProgramElement(new Multiplication());
-		offspring.addProgramElement(new Constant(mutationStep));
-		offspring.addProgramElement(new Subtraction());
 
 		// create 2 random trees
-		int maximumInitialDepth = 6;
-		Individual randomTree1 = grow(maximumInitialDepth);
-		Individual randomTree2 = grow(maximumInitialDepth);
+		int maximumInitialDepth = RANDOM_TREE_DEPTH;
+		Individual randomTree1Individual = drawRandomTree(maximumInitialDepth);
+		Individual randomTree2Individual = drawRandomTree(maximumInitialDepth);
+		ProgramNode randomTree1 = getProgramNode(randomTree1Individual);
+		ProgramNode randomTree2 = getProgramNode(randomTree2Individual);
 
 		if (boundedMutation) {
-			offspring.addProgramElement(new LogisticFunction());
-		}
-		// copy random tree 1 to offspring
-		for (int i = 0; i < randomTree1.getSize(); i++) {
-			offspring.addProgramElement(randomTree1.getProgramElementAtIndex(i));
+			randomTree1 = ProgramNode.create(new LogisticFunction(), randomTree1);
+			randomTree2 = ProgramNode.create(new LogisticFunction(), randomTree2);
 		}
 
-		if (boundedMutation) {
-			offspring.addProgramElement(new LogisticFunction());
+		// p + step * (r1 - r2)
+		ProgramNode difference = ProgramNode.create(new Subtraction(), randomTree1, randomTree2);
+		ProgramNode step = ProgramNode.create(new Multiplication(), ProgramNode.create(new Constant(mutationStep)),
+				difference);
+		offspring.setProgramNode(ProgramNode.create(new Addition(), getProgramNode(p), step));
+		if (ancestryLog) {
+			logMutation(offspring, p, randomTree1Individual, randomTree2Individual);
 		}
-		// copy random tree 2 to offspring
-		for (int i = 0; i < randomTree2.getSize(); i++) {
-			offspring.addProgramElement(randomTree2.getProgramElementAtIndex(i));
-		}
-
-		offspring.calculateDepth();
 		return offspring;
 	}
 
@@ -183,27 +269,39 @@ public class GsgpRun extends GpRun {
 
 		Individual offspring = new Individual();
 
-		// create 2 random trees and evaluate them
-		int maximumInitialDepth = 6;
-		Individual randomTree1 = grow(maximumInitialDepth);
-		Individual randomTree2 = grow(maximumInitialDepth);
-		randomTree1.evaluate(data);
-		randomTree2.evaluate(data);
+		// draw 2 random trees from the pool or create and evaluate them
+		int maximumInitialDepth = RANDOM_TREE_DEPTH;
+		int randomTree1Index = drawRandomTreeIndex();
+		int randomTree2Index = drawRandomTreeIndex();
+		Individual randomTree1 = getEvaluatedRandomTree(randomTree1Index, maximumInitialDepth);
+		Individual randomTree2 = getEvaluatedRandomTree(randomTree2Index, maximumInitialDepth);
 
 		// build training data semantics
 		double[] parentTrainingSemantics = p.getTrainingDataOutputs();
-		double[] randomTree1TrainingSemantics = randomTree1.getTrainingDataOutputs();
-		double[] randomTree2TrainingSemantics = randomTree2.getTrainingDataOutputs();
 		double[] offspringTrainingSemantics = buildMutationOffspringSemantics(parentTrainingSemantics,
-				randomTree1TrainingSemantics, randomTree2TrainingSemantics);
+				getRandomTreeSemantics(randomTree1, randomTree1Index, Data.TRAINING),
+				getRandomTreeOffset(randomTree1Index, Data.TRAINING),
+				getRandomTreeSemantics(randomTree2, randomTree2Index, Data.TRAINING),
+				getRandomTreeOffset(randomTree2Index, Data.TRAINING));
 		offspring.setTrainingDataOutputs(offspringTrainingSemantics);
 
-		// build unseen data semantics
+		// build validation data semantics
+		if (data.getValidationData() != null) {
+			double[] offspringValidationSemantics = buildMutationOffspringSemantics(p.getValidationDataOutputs(),
+					getRandomTreeSemantics(randomTree1, randomTree1Index, Data.VALIDATION),
+					getRandomTreeOffset(randomTree1Index, Data.VALIDATION),
+					getRandomTreeSemantics(randomTree2, randomTree2Index, Data.VALIDATION),
+					getRandomTreeOffset(randomTree2Index, Data.VALIDATION));
+			offspring.setValidationDataOutputs(offspringValidationSemantics);
+		}
+
+		// build unseen data semantics (not deferred, the parent might not be around anymore later on)
 		double[] parentUnseenSemantics = p.getUnseenDataOutputs();
-		double[] randomTree1UnseenSemantics = randomTree1.getUnseenDataOutputs();
-		double[] randomTree2UnseenSemantics = randomTree2.getUnseenDataOutputs();
 		double[] offspringUnseenSemantics = buildMutationOffspringSemantics(parentUnseenSemantics,
-				randomTree1UnseenSemantics, randomTree2UnseenSemantics);
+				getRandomTreeSemantics(randomTree1, randomTree1Index, Data.UNSEEN),
+				getRandomTreeOffset(randomTree1Index, Data.UNSEEN),
+				getRandomTreeSemantics(randomTree2, randomTree2Index, Data.UNSEEN),
+				getRandomTreeOffset(randomTree2Index, Data.UNSEEN));
 		offspring.setUnseenDataOutputs(offspringUnseenSemantics);
 
 		// calculate size and depth
@@ -211,15 +309,27 @@ public class GsgpRun extends GpRun {
 		offspring.setComputedSize(calculateMutationOffspringSize(p, randomTree1, randomTree2));
 		offspring.setDepth(calculateMutationOffspringDepth(p, randomTree1, randomTree2));
 
+		if (ancestryLog) {
+			logMutation(offspring, p, randomTree1, randomTree2);
+		} else {
+			offspring.setAncestry(AncestryNode.mutation(offspring.getId(), p.getAncestry(), randomTree1.getProgram(),
+					randomTree2.getProgram(), mutationStep, boundedMutation));
+		}
+
 		return offspring;
 	}
 
 	protected double[] buildMutationOffspringSemantics(double[] parentSemantics, double[] randomTree1Semantics,
 			double[] randomTree2Semantics) {
+		return buildMutationOffspringSemantics(parentSemantics, randomTree1Semantics, 0, randomTree2Semantics, 0);
+	}
+
+	protected double[] buildMutationOffspringSemantics(double[] parentSemantics, double[] randomTree1Semantics,
+			int randomTree1Offset, double[] randomTree2Semantics, int randomTree2Offset) {
 		double[] offspringSemantics = new double[parentSemantics.length];
 		for (int i = 0; i < offspringSemantics.length; i++) {
-			double value1 = randomTree1Semantics[i];
-			double value2 = randomTree2Semantics[i];
+			double value1 = randomTree1Semantics[randomTree1Offset + i];
+			double value2 = randomTree2Semantics[randomTree2Offset + i];
 			if (boundedMutation) {
 				value1 = Utils.logisticFunction(value1);
 				value2 = Utils.logisticFunction(value2);
@@ -229,8 +339,10 @@ public class GsgpRun extends GpRun {
 		return offspringSemantics;
 	}
 
-	protected int calculateMutationOffspringSize(Individual parent, Individual randomTree1, Individual randomTree2) {
-		return parent.getSize() + randomTree1.getSize() + randomTree2.getSize() + 4;
+	protected long calculateMutationOffspringSize(Individual parent, Individual randomTree1, Individual randomTree2) {
+		// +, *, step, - and the logistic functions bounding the random trees
+		return ProgramNode.addSizes(parent.getSize(),
+				randomTree1.getSize() + randomTree2.getSize() + (boundedMutation ? 6 : 4));
 	}
 
 	protected int calculateMutationOffspringDepth(Individual parent, Individual randomTree1, Individual randomTree2) {
@@ -238,6 +350,26 @@ public class GsgpRun extends GpRun {
 		return Math.max(largestRandomTreeDepth + 3, parent.getDepth() + 1);
 	}
 
+	protected void logCrossover(Individual offspring, Individual p1, Individual p2, Individual randomTree) {
+		logRandomTree(randomTree);
+		Utils.logAncestry(offspring.getId(), AncestryNode.CROSSOVER, p1.getId(), p2.getId(), randomTree.getId(),
+				AncestryLog.NONE, 0.0, false);
+	}
+
+	protected void logMutation(Individual offspring, Individual p, Individual randomTree1, Individual randomTree2) {
+		logRandomTree(randomTree1);
+		logRandomTree(randomTree2);
+		Utils.logAncestry(offspring.getId(), AncestryNode.MUTATION, p.getId(), AncestryLog.NONE, randomTree1.getId(),
+				randomTree2.getId(), mutationStep, boundedMutation);
+	}
+
+	// a tree evicted from the set of logged trees is written again, the reconstruction uses any copy
+	protected void logRandomTree(Individual randomTree) {
+		if (loggedRandomTrees.put(randomTree.getId(), Boolean.TRUE) == null) {
+			Utils.logRandomTree(randomTree.getId(), randomTree.getProgram());
+		}
+	}
+
 	// ##### get's and set's from here on #####
 
 	public double getMutationStep() {
@@ -255,4 +387,8 @@ public class GsgpRun extends GpRun {
 	public void setBuildIndividuals(boolean buildIndividuals) {
 		this.buildIndividuals = buildIndividuals;
 	}
+
+	public void setAncestryLog(boolean ancestryLog) {
+		this.ancestryLog = ancestryLog;
+	}
 }
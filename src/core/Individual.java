@@ -4,6 +4,8 @@ import utils.Utils;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import programElements.Constant;
 import programElements.InputVariable;
@@ -17,16 +19,57 @@ public class Individual implements Serializable {
 
 	protected static long nextId;
 
+	protected static final int MAXIMUM_PRINTED_SIZE = 1000000;
+
+	// evaluate whole data sets column by column instead of row by row
+	protected static boolean batchEvaluation = false;
+	protected static BatchEvaluator batchEvaluator = new BatchEvaluator();
+	// compiles frequently evaluated programs to bytecode (disabled if null)
+	protected static JitCompiler jitCompiler = null;
+	// reuses the outputs of subtrees seen in earlier evaluations (disabled if null)
+	protected static SemanticsCache semanticsCache = null;
+	// repulsor distances are estimated from sketches of the semantics if set
+	protected static SemanticSketch semanticSketch = null;
+	// keep the outputs of every node and only recompute the path from the variation point to the root
+	protected static boolean incrementalEvaluation = false;
+	// reuses the results of structurally identical programs (disabled if null)
+	protected static FitnessCache fitnessCache = null;
+	// evaluates and prints the simplified program (disabled if null)
+	protected static ProgramSimplifier simplifier = null;
+	// also replaces the stored program by its simplified version
+	protected static boolean simplifyGenotype = false;
+
+	// incremented whenever the training or validation error of any individual changes (orders cached by populations)
+	protected static long errorModificationCount = 0;
+	// incremented whenever the rank or overfit severity of any individual changes
+	protected static long rankModificationCount = 0;
+	// the same counts for this individual only, a population checks them once any individual changed
+	protected long errorVersion;
+	protected long rankVersion;
+
 	protected long id;
 	protected ArrayList<ProgramElement> program;
 	protected int depth;
 	protected int nsga_II_rank;
 	protected double trainingError, validationError, unseenError;
 	protected double[] trainingDataOutputs, validationDataOutputs, unseenDataOutputs;
+	// sketches of the outputs they were calculated from, recalculated once the outputs are replaced
+	protected transient double[] trainingSketch, validationSketch;
+	protected transient double[] sketchedTrainingOutputs, sketchedValidationOutputs;
+	protected transient SemanticSketch trainingSketchedWith, validationSketchedWith;
+
+	// training error on all training rows, only computed for reported individuals if the run evaluates on a subset
+	protected double fullTrainingError;
+	protected boolean hasFullTrainingError;
+
+	// geometric semantic offspring: how the individual was created, the program is rebuilt from it on demand
+	protected AncestryNode ancestry;
 
 	// repulser data
 	protected double overfitSeverity;
 	protected boolean isMerged = false;
+	// the individuals merged into this one, in the order of merging
+	protected ArrayList<Individual> mergedIndividuals;
 
 	public boolean getIsOverfitting() {
 		return isOverfitting;
@@ -44,7 +87,34 @@ public class Individual implements Serializable {
 	protected int printIndex;
 
 	protected boolean sizeOverride;
-	protected int computedSize;
+	protected long computedSize;
+
+	// shared immutable representation of the program (GSGP), used instead of the program list if set
+	protected ProgramNode programNode;
+
+	// simplified program that is evaluated instead of the stored one (same list if nothing could be simplified)
+	protected transient List<ProgramElement> phenotype;
+	// stack machine version of the phenotype, compiled on first evaluation
+	protected transient CompiledProgram compiledProgram;
+
+	// data to evaluate the unseen outputs on when they are first requested
+	protected transient Data pendingUnseenData;
+
+	// early abort: the training evaluation stopped after evaluatedTrainingRows rows because the error exceeded the
+	// threshold of the run, the training error is a lower bound until the evaluation is completed
+	protected transient Data abortedTrainingData;
+	protected transient long abortedTrainingModificationCount;
+	protected transient int evaluatedTrainingRows;
+	protected transient double trainingErrorSum;
+
+	// incremental evaluation: outputs of every node per data split ([split][node]) and the data they belong to
+	protected transient double[][][] nodeOutputs;
+	protected transient Data nodeOutputsData;
+	protected transient long nodeOutputsModificationCount;
+	// incremental evaluation: this program is the origin's program with [originStart, originStart + originLength[
+	// replaced by the donor's elements [donorStart, donorStart + donorLength[
+	protected transient Individual origin, donor;
+	protected transient int originStart, originLength, donorStart, donorLength;
 
 	public Individual() {
 		program = new ArrayList<ProgramElement>();
@@ -52,29 +122,205 @@ public class Individual implements Serializable {
 		id = getNextId();
 	}
 
-	protected static long getNextId() {
+	// random trees are also created by the background thread of the random tree pool
+	protected static synchronized long getNextId() {
 		return nextId++;
 	}
 
+	public static void setBatchEvaluation(boolean flag) {
+		Individual.batchEvaluation = flag;
+	}
+
+	public static void setJitCompiler(JitCompiler compiler) {
+		Individual.jitCompiler = compiler;
+	}
+
+	public static JitCompiler getJitCompiler() {
+		return Individual.jitCompiler;
+	}
+
+	public static void setSemanticsCache(SemanticsCache cache) {
+		Individual.semanticsCache = cache;
+	}
+
+	public static SemanticsCache getSemanticsCache() {
+		return Individual.semanticsCache;
+	}
+
+	public static void setSemanticSketch(SemanticSketch sketch) {
+		Individual.semanticSketch = sketch;
+	}
+
+	public static SemanticSketch getSemanticSketch() {
+		return Individual.semanticSketch;
+	}
+
+	public static void setIncrementalEvaluation(boolean flag) {
+		Individual.incrementalEvaluation = flag;
+	}
+
+	public static void setFitnessCache(FitnessCache cache) {
+		Individual.fitnessCache = cache;
+	}
+
+	public static FitnessCache getFitnessCache() {
+		return Individual.fitnessCache;
+	}
+
+	public static long getErrorModificationCount() {
+		return Individual.errorModificationCount;
+	}
+
+	public static long getRankModificationCount() {
+		return Individual.rankModificationCount;
+	}
+
+	public long getErrorVersion() {
+		return errorVersion;
+	}
+
+	public long getRankVersion() {
+		return rankVersion;
+	}
+
+	protected void errorsChanged() {
+		errorVersion++;
+		errorModificationCount++;
+	}
+
+	protected void ranksChanged() {
+		rankVersion++;
+		rankModificationCount++;
+	}
+
+	public static void setSimplifier(ProgramSimplifier simplifier) {
+		Individual.simplifier = simplifier;
+	}
+
+	public static ProgramSimplifier getSimplifier() {
+		return Individual.simplifier;
+	}
+
+	public static void setSimplifyGenotype(boolean flag) {
+		Individual.simplifyGenotype = flag;
+	}
+
 	public void evaluate(Data data) {
+		evaluate(data, Double.POSITIVE_INFINITY);
+	}
+
+	// individuals whose training error is known to exceed the threshold only get a lower bound of their error
+	public void evaluate(Data data, double trainingErrorThreshold) {
 		if (isMerged)
 			return;
-		evaluateOnTrainingData(data);
-		evaluateOnValidationData(data);
-		evaluateOnUnseenData(data);
+		hasFullTrainingError = false;
+		if (simplifyGenotype)
+			simplifyGenotype();
+		if (fitnessCache != null && !sizeOverride && programNode == null && fitnessCache.lookup(this, data)) {
+			abortedTrainingData = null;
+		} else {
+			if (trainingErrorThreshold < Double.POSITIVE_INFINITY && canAbortEvaluation())
+				evaluateOnTrainingData(data, trainingErrorThreshold);
+			else
+				evaluateOnTrainingData(data);
+			evaluateOnValidationData(data);
+			if (fitnessCache != null && !sizeOverride && programNode == null && !isTrainingErrorBounded())
+				fitnessCache.put(this, data);
+		}
+		errorsChanged();
+		// unseen data is only evaluated once its error or outputs are requested
+		pendingUnseenData = data;
+		// the parents are not needed anymore, don't keep the ancestry alive
+		origin = null;
+		donor = null;
 	}
 
 	public double[] evaluateOnTrainingData(Data data) {
 		if (isMerged)
 			return trainingDataOutputs;
+		abortedTrainingData = null;
+		hasFullTrainingError = false;
 		double[][] trainingData = data.getTrainingData();
 		if (sizeOverride == false) {
-			trainingDataOutputs = evaluate(trainingData);
+			trainingDataOutputs = evaluateProgram(data, Data.TRAINING);
 		}
 		trainingError = calculateRMSE(trainingData, trainingDataOutputs);
+		errorsChanged();
 		return trainingDataOutputs;
 	}
 
+	// evaluates the training error on all training rows, the outputs used for selection are not changed
+	public double evaluateFullTrainingError(Data data) {
+		if (isMerged || sizeOverride || programNode != null || !data.isTrainingSubset()) {
+			// without a subset the training error already covers all rows (individuals that are not stored as a
+			// program list only have the error on the subset)
+			completeTrainingEvaluation();
+			return trainingError;
+		}
+		if (!hasFullTrainingError) {
+			double[][] fullTrainingData = data.getFullTrainingData();
+			fullTrainingError = calculateRMSE(fullTrainingData, evaluateCompiled(fullTrainingData));
+			hasFullTrainingError = true;
+		}
+		return fullTrainingError;
+	}
+
+	// subtree reuse (incremental evaluation and the semantics cache) needs the outputs on all rows
+	protected boolean canAbortEvaluation() {
+		return !sizeOverride && programNode == null && !incrementalEvaluation && semanticsCache == null;
+	}
+
+	protected void evaluateOnTrainingData(Data data, double trainingErrorThreshold) {
+		double[][] trainingData = data.getTrainingData();
+		trainingDataOutputs = new double[trainingData.length];
+		evaluatedTrainingRows = 0;
+		trainingErrorSum = 0;
+		abortedTrainingData = null;
+		// the rmse exceeds the threshold as soon as the sum of squared errors exceeds threshold^2 * rows
+		double limit = trainingErrorThreshold * trainingErrorThreshold * trainingData.length;
+		if (!continueTrainingEvaluation(trainingData, limit, true)) {
+			abortedTrainingData = data;
+			abortedTrainingModificationCount = data.getModificationCount();
+		}
+		trainingError = Math.sqrt(trainingErrorSum / trainingData.length);
+	}
+
+	// evaluates the remaining training rows one by one, returns false if the error sum exceeded the limit
+	protected boolean continueTrainingEvaluation(double[][] trainingData, double limit, boolean countRequest) {
+		CompiledEvaluator evaluator = null;
+		if (jitCompiler != null) {
+			evaluator = jitCompiler.getEvaluator(getCompiledProgram(), countRequest);
+		}
+		CompiledProgram compiled = getCompiledProgram();
+		for (int i = evaluatedTrainingRows; i < trainingData.length; i++) {
+			double output = evaluator != null ? evaluator.eval(trainingData[i]) : compiled.evaluate(trainingData[i]);
+			trainingDataOutputs[i] = output;
+			trainingErrorSum += Math.pow(output - trainingData[i][trainingData[i].length - 1], 2.0);
+			evaluatedTrainingRows = i + 1;
+			if (trainingErrorSum > limit) {
+				return evaluatedTrainingRows == trainingData.length;
+			}
+		}
+		return true;
+	}
+
+	// resumes an aborted training evaluation, afterwards outputs and error are exact
+	protected void completeTrainingEvaluation() {
+		if (abortedTrainingData == null) {
+			return;
+		}
+		Data data = abortedTrainingData;
+		abortedTrainingData = null;
+		if (abortedTrainingModificationCount != data.getModificationCount()) {
+			evaluateOnTrainingData(data);
+			return;
+		}
+		double[][] trainingData = data.getTrainingData();
+		continueTrainingEvaluation(trainingData, Double.POSITIVE_INFINITY, false);
+		trainingError = Math.sqrt(trainingErrorSum / trainingData.length);
+		errorsChanged();
+	}
+
 	public double[] evaluateOnValidationData(Data data) {
 		if (isMerged)
 			return validationDataOutputs;
@@ -84,23 +330,169 @@ public class Individual implements Serializable {
 			return null;
 		}
 		if (sizeOverride == false) {
-			validationDataOutputs = evaluate(validationData);
+			validationDataOutputs = evaluateProgram(data, Data.VALIDATION);
 		}
 		validationError = calculateRMSE(validationData, validationDataOutputs);
+		errorsChanged();
 		return validationDataOutputs;
 	}
 
 	public double[] evaluateOnUnseenData(Data data) {
 		if (isMerged)
 			return unseenDataOutputs;
+		pendingUnseenData = null;
 		double[][] unseenData = data.getUnseenData();
 		if (sizeOverride == false) {
-			unseenDataOutputs = evaluate(unseenData);
+			unseenDataOutputs = evaluateProgram(data, Data.UNSEEN);
 		}
 		unseenError = calculateRMSE(unseenData, unseenDataOutputs);
 		return unseenDataOutputs;
 	}
 
+	protected double[] evaluateProgram(Data data, int split) {
+		if (programNode != null) {
+			return programNode.evaluate(data, split, semanticsCache);
+		}
+		// node outputs are only kept for programs that are evaluated as they are stored
+		if (incrementalEvaluation && getPhenotype() == program) {
+			return evaluateIncremental(data, split);
+		}
+		if (semanticsCache != null) {
+			return semanticsCache.evaluate(getPhenotype(), data, split);
+		}
+		if (jitCompiler != null) {
+			// one request per evaluation of the individual, counted on the training data
+			CompiledEvaluator evaluator = jitCompiler.getEvaluator(getCompiledProgram(), split == Data.TRAINING);
+			if (evaluator != null) {
+				return jitCompiler.evaluate(evaluator, data.getData(split));
+			}
+		}
+		if (batchEvaluation) {
+			return batchEvaluator.evaluate(getCompiledProgram(), data.getColumns(split));
+		}
+		return evaluateCompiled(data.getData(split));
+	}
+
+	// replaces the program by its phenotype, the positions of the variation origin do not apply anymore
+	protected void simplifyGenotype() {
+		List<ProgramElement> simplified = getPhenotype();
+		if (simplified != program) {
+			program = new ArrayList<ProgramElement>(simplified);
+			phenotype = program;
+			origin = null;
+			donor = null;
+			calculateDepth();
+		}
+	}
+
+	public void setVariationOrigin(Individual origin, int originStart, int originLength, Individual donor,
+			int donorStart, int donorLength) {
+		this.origin = origin;
+		this.originStart = originStart;
+		this.originLength = originLength;
+		this.donor = donor;
+		this.donorStart = donorStart;
+		this.donorLength = donorLength;
+	}
+
+	protected boolean hasNodeOutputs(Data data, int split) {
+		return nodeOutputs != null && nodeOutputs[split] != null && nodeOutputsData == data
+				&& nodeOutputsModificationCount == data.getModificationCount();
+	}
+
+	// evaluates all nodes of the program column wise and keeps their outputs, reusing the node outputs of the
+	// parents for everything that is not on the path from the variation point to the root
+	protected double[] evaluateIncremental(Data data, int split) {
+		double[][] columns = data.getColumns(split);
+		int rows = columns.length == 0 ? 0 : columns[0].length;
+		int length = program.size();
+		int[] ends = new int[length];
+		int[] parents = new int[length];
+		calculateSubtreeStructure(ends, parents);
+
+		double[][] outputs = new double[length][];
+		if (origin != null && origin.hasNodeOutputs(data, split)) {
+			double[][] originOutputs = origin.nodeOutputs[split];
+			// nodes in front of the variation point are either ancestors (recomputed below) or unchanged subtrees
+			for (int i = 0; i < originStart; i++) {
+				outputs[i] = originOutputs[i];
+			}
+			for (int i = originStart + donorLength; i < length; i++) {
+				outputs[i] = originOutputs[i - donorLength + originLength];
+			}
+			if (donor.hasNodeOutputs(data, split)) {
+				for (int i = 0; i < donorLength; i++) {
+					outputs[originStart + i] = donor.nodeOutputs[split][donorStart + i];
+				}
+			} else {
+				evaluateNode(originStart, outputs, ends, columns, rows);
+			}
+			for (int i = parents[originStart]; i >= 0; i = parents[i]) {
+				outputs[i] = null;
+				evaluateNode(i, outputs, ends, columns, rows);
+			}
+		} else {
+			evaluateNode(0, outputs, ends, columns, rows);
+		}
+
+		if (nodeOutputs == null || nodeOutputsData != data || nodeOutputsModificationCount != data.getModificationCount()) {
+			nodeOutputs = new double[3][][];
+			nodeOutputsData = data;
+			nodeOutputsModificationCount = data.getModificationCount();
+		}
+		nodeOutputs[split] = outputs;
+		// the root outputs become the individual's outputs, which must not be shared with a parent or the data
+		return outputs[0].clone();
+	}
+
+	// computes the output of a node, reusing all outputs that are already known
+	protected void evaluateNode(int position, double[][] outputs, int[] ends, double[][] columns, int rows) {
+		if (outputs[position] != null) {
+			return;
+		}
+		ProgramElement element = program.get(position);
+		if (element instanceof InputVariable) {
+			outputs[position] = columns[((InputVariable) element).getVariableIndex()];
+		} else if (element instanceof Constant) {
+			outputs[position] = new double[rows];
+			Arrays.fill(outputs[position], ((Constant) element).getValue());
+		} else {
+			Operator operator = (Operator) element;
+			double[][] arguments = new double[operator.getArity()][];
+			int child = position + 1;
+			for (int a = 0; a < arguments.length; a++) {
+				evaluateNode(child, outputs, ends, columns, rows);
+				arguments[a] = outputs[child];
+				child = ends[child];
+			}
+			outputs[position] = new double[rows];
+			operator.performArrayOperation(arguments, outputs[position], rows);
+		}
+	}
+
+	// for every node: the (exclusive) end of its subtree and the index of its parent (-1 for the root)
+	protected void calculateSubtreeStructure(int[] ends, int[] parents) {
+		int[] stack = new int[program.size()];
+		int top = 0;
+		for (int position = program.size() - 1; position >= 0; position--) {
+			ends[position] = position + 1;
+			if (program.get(position) instanceof Operator) {
+				for (int a = 0; a < ((Operator) program.get(position)).getArity(); a++) {
+					int child = stack[--top];
+					parents[child] = position;
+					ends[position] = ends[child];
+				}
+			}
+			stack[top++] = position;
+		}
+		parents[0] = -1;
+	}
+
+	public double[] evaluateCompiled(double[][] data) {
+		return getCompiledProgram().evaluate(data);
+	}
+
+	// reference tree walking interpreter
 	public double[] evaluate(double[][] data) {
 		double[] outputs = new double[data.length];
 		for (int i = 0; i < outputs.length; i++) {
@@ -180,6 +572,7 @@ public class Individual implements Serializable {
 	}
 
 	public double calculateTrainingSemanticDistance(double[] dataPoint){
+		completeTrainingEvaluation();
 		double d = 0;
 		for (int i = 0; i < this.trainingDataOutputs.length; i++){
 			d += (dataPoint[i]-this.trainingDataOutputs[i])*(dataPoint[i]-this.trainingDataOutputs[i]);
@@ -196,6 +589,7 @@ public class Individual implements Serializable {
 	}
 
 	public double calculateCombinedSemanticDistance(double[] dataPointTrain, double[] dataPointVal){
+		completeTrainingEvaluation();
 		double d = 0;
 		for (int i = 0; i < dataPointTrain.length+dataPointVal.length; i++){
 			if (i < dataPointTrain.length)
@@ -207,21 +601,55 @@ public class Individual implements Serializable {
 	}
 
 	public void mergeWith(Individual ind){
+		// resolve the lazy unseen evaluation before the individual stops being evaluated
+		getUnseenDataOutputs();
+		completeTrainingEvaluation();
 		isMerged = true;
+		this.overfitSeverity =( this.overfitSeverity + ind.getOverfitSeverity() )/ 2;
+		ranksChanged();
+		if (mergedIndividuals == null)
+			mergedIndividuals = new ArrayList<Individual>();
+		mergedIndividuals.add(ind);
+		averageWith(ind);
+	}
+
+	// averages errors and semantics with those of a merged individual
+	protected void averageWith(Individual ind){
 		this.trainingError = (this.trainingError + ind.getTrainingError())/2;
 		this.validationError = (this.validationError + ind.getValidationError())/2;
 		this.unseenError = (this.unseenError + ind.getUnseenError())/2;
-		this.overfitSeverity =( this.overfitSeverity + ind.getOverfitSeverity() )/ 2;
-		// update semantics
-		for (int s = 0; s < trainingDataOutputs.length; s++){
-			trainingDataOutputs[s] = (trainingDataOutputs[s]+ind.getTrainingDataOutputs()[s])/2;
+		errorsChanged();
+		// update semantics (into new arrays, output arrays may be shared through the semantics cache)
+		trainingDataOutputs = mergeOutputs(trainingDataOutputs, ind.getTrainingDataOutputs());
+		validationDataOutputs = mergeOutputs(validationDataOutputs, ind.getValidationDataOutputs());
+		unseenDataOutputs = mergeOutputs(unseenDataOutputs, ind.getUnseenDataOutputs());
+	}
+
+	// evaluates the individual again after the data has changed (e.g. a new training subset); a merged individual is
+	// evaluated itself and then repeats its merges, in their original order, on the new outputs of the merged individuals;
+	// individuals without a program (semantics-only GSGP offspring) keep their outputs, only valid on unchanged rows
+	public void reevaluate(Data data){
+		if (!isMerged){
+			evaluate(data);
+			return;
 		}
-		for (int s = 0; s < validationDataOutputs.length; s++){
-			validationDataOutputs[s] = (validationDataOutputs[s]+ind.getValidationDataOutputs()[s])/2;
+		isMerged = false;
+		evaluate(data);
+		getUnseenDataOutputs();
+		completeTrainingEvaluation();
+		isMerged = true;
+		for (Individual ind : mergedIndividuals){
+			ind.reevaluate(data);
+			averageWith(ind);
 		}
-		for (int s = 0; s < unseenDataOutputs.length; s++){
-			unseenDataOutputs[s] = (unseenDataOutputs[s]+ind.getUnseenDataOutputs()[s])/2;
+	}
+
+	protected static double[] mergeOutputs(double[] outputs, double[] otherOutputs){
+		double[] merged = new double[outputs.length];
+		for (int s = 0; s < outputs.length; s++){
+			merged[s] = (outputs[s]+otherOutputs[s])/2;
 		}
+		return merged;
 	}
 
 	public int countElementsToEnd(int startingIndex) {
@@ -239,14 +667,20 @@ public class Individual implements Serializable {
 
 	public void addProgramElement(ProgramElement programElement) {
 		program.add(programElement);
+		compiledProgram = null;
+		phenotype = null;
 	}
 
 	public void addProgramElementAtIndex(ProgramElement programElement, int index) {
 		program.add(index, programElement);
+		compiledProgram = null;
+		phenotype = null;
 	}
 
 	public void removeProgramElementAtIndex(int index) {
 		program.remove(index);
+		compiledProgram = null;
+		phenotype = null;
 	}
 
 	public ProgramElement getProgramElementAtIndex(int index) {
@@ -255,20 +689,31 @@ public class Individual implements Serializable {
 
 	public void setProgramElementAtIndex(ProgramElement programElement, int index) {
 		program.set(index, programElement);
+		compiledProgram = null;
+		phenotype = null;
 	}
 
 	public String print() {
 		String out = " ";
-		if (sizeOverride == true) {
+		// geometric semantic programs grow exponentially, only small ones are rebuilt for printing
+		if (programNode != null && programNode.getSize() <= MAXIMUM_PRINTED_SIZE) {
+			printIndex = 0;
+			out += printInner(programNode.toProgram());
+		} else if (programNode != null) {
+			out += "[Individual not constructed]";
+		} else if (sizeOverride == true && ancestry != null && computedSize <= MAXIMUM_PRINTED_SIZE) {
+			printIndex = 0;
+			out += printInner(ancestry.buildProgram());
+		} else if (sizeOverride == true) {
 			out += "[Individual not constructed]";
 		} else {
 			printIndex = 0;
-			out += printInner();
+			out += printInner(getPhenotype());
 		}
 		return out;
 	}
 
-	protected String printInner() {
+	protected String printInner(List<ProgramElement> program) {
 		String out = "";
 		if (program.get(printIndex) instanceof Terminal) {
 			out += " " + program.get(printIndex);
@@ -278,7 +723,7 @@ public class Individual implements Serializable {
 			Operator currentOperator = (Operator) program.get(printIndex);
 			for (int i = 0; i < currentOperator.getArity(); i++) {
 				printIndex++;
-				out += printInner();
+				out += printInner(program);
 			}
 			out += ")";
 		}
@@ -291,15 +736,29 @@ public class Individual implements Serializable {
 		return trainingError;
 	}
 
+	// the training error on all rows if it has been evaluated, the training error used for selection otherwise
+	public double getFullTrainingError() {
+		return hasFullTrainingError ? fullTrainingError : trainingError;
+	}
+
+	// true if the training error is only a lower bound (early aborted evaluation)
+	public boolean isTrainingErrorBounded() {
+		return abortedTrainingData != null;
+	}
+
 	public double getValidationError() {
 		return validationError;
 	}
 
 	public double getUnseenError() {
+		if (pendingUnseenData != null) {
+			evaluateOnUnseenData(pendingUnseenData);
+		}
 		return unseenError;
 	}
 
 	public double[] getTrainingDataOutputs() {
+		completeTrainingEvaluation();
 		return trainingDataOutputs;
 	}
 
@@ -307,7 +766,29 @@ public class Individual implements Serializable {
 		return validationDataOutputs;
 	}
 
+	public double[] getTrainingSketch() {
+		completeTrainingEvaluation();
+		if (trainingSketchedWith != semanticSketch || sketchedTrainingOutputs != trainingDataOutputs) {
+			trainingSketch = semanticSketch.sketchTrainingOutputs(trainingDataOutputs);
+			sketchedTrainingOutputs = trainingDataOutputs;
+			trainingSketchedWith = semanticSketch;
+		}
+		return trainingSketch;
+	}
+
+	public double[] getValidationSketch() {
+		if (validationSketchedWith != semanticSketch || sketchedValidationOutputs != validationDataOutputs) {
+			validationSketch = semanticSketch.sketchValidationOutputs(validationDataOutputs);
+			sketchedValidationOutputs = validationDataOutputs;
+			validationSketchedWith = semanticSketch;
+		}
+		return validationSketch;
+	}
+
 	public double[] getUnseenDataOutputs() {
+		if (pendingUnseenData != null) {
+			evaluateOnUnseenData(pendingUnseenData);
+		}
 		return unseenDataOutputs;
 	}
 
@@ -315,8 +796,10 @@ public class Individual implements Serializable {
 		return id;
 	}
 
-	public int getSize() {
-		if (sizeOverride) {
+	public long getSize() {
+		if (programNode != null) {
+			return programNode.getSize();
+		} else if (sizeOverride) {
 			return computedSize;
 		} else {
 			return program.size();
@@ -339,11 +822,45 @@ public class Individual implements Serializable {
 		return program;
 	}
 
+	public List<ProgramElement> getPhenotype() {
+		if (simplifier == null || sizeOverride || programNode != null) {
+			return program;
+		}
+		if (phenotype == null) {
+			phenotype = simplifier.simplify(program);
+		}
+		return phenotype;
+	}
+
+	public ProgramNode getProgramNode() {
+		return programNode;
+	}
+
+	public void setProgramNode(ProgramNode programNode) {
+		this.programNode = programNode;
+		this.depth = programNode.getDepth();
+	}
+
+	public AncestryNode getAncestry() {
+		return ancestry;
+	}
+
+	public CompiledProgram getCompiledProgram() {
+		if (compiledProgram == null) {
+			compiledProgram = CompiledProgram.compile(getPhenotype());
+		}
+		return compiledProgram;
+	}
+
+	public void setAncestry(AncestryNode ancestry) {
+		this.ancestry = ancestry;
+	}
+
 	public void setSizeOverride(boolean sizeOverride) {
 		this.sizeOverride = sizeOverride;
 	}
 
-	public void setComputedSize(int computedSize) {
+	public void setComputedSize(long computedSize) {
 		this.computedSize = computedSize;
 	}
 
@@ -353,10 +870,12 @@ public class Individual implements Serializable {
 
 	public void setRank(int rank) {
 		this.nsga_II_rank = rank;
+		ranksChanged();
 	}
 
 	public void setOverfitSeverity(double overfitSeverity) {
 		this.overfitSeverity = overfitSeverity;
+		ranksChanged();
 	}
 
 	public void setTrainingDataOutputs(double[] trainingDataOutputs) {
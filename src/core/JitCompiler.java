@@ -0,0 +1,108 @@
+package core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import programElements.ProtectedDivision;
+
+// turns frequently evaluated programs into hidden classes that HotSpot compiles like hand written code
+public class JitCompiler {
+
+	protected static class Entry {
+		protected int requests;
+		protected CompiledEvaluator evaluator;
+		protected boolean failed;
+	}
+
+	// number of times a structurally identical program has to be evaluated before it is compiled
+	protected int compileThreshold;
+	// programs of at least this size are compiled on their first evaluation
+	protected int sizeThreshold;
+
+	// least recently used programs are evicted, which makes their generated classes unreachable so they can be unloaded
+	protected LinkedHashMap<CompiledProgram, Entry> cache;
+
+	protected MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	protected long compilations, compiledEvaluations;
+
+	public JitCompiler(int compileThreshold, int sizeThreshold, final int cacheSize) {
+		this.compileThreshold = compileThreshold;
+		this.sizeThreshold = sizeThreshold;
+		this.cache = new LinkedHashMap<CompiledProgram, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 7L;
+
+			protected boolean removeEldestEntry(Map.Entry<CompiledProgram, Entry> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	public static double protectedDivision(double numerator, double denominator) {
+		if (Math.abs(denominator) < ProtectedDivision.MINIMUM_DENOMINATOR_VALUE) {
+			return numerator;
+		} else {
+			return numerator / denominator;
+		}
+	}
+
+	// returns the generated evaluator of the program once the policy allows it, only counted requests advance the policy
+	public CompiledEvaluator getEvaluator(CompiledProgram program, boolean countRequest) {
+		Entry entry = cache.get(program);
+		if (entry == null) {
+			entry = new Entry();
+			cache.put(program, entry);
+		}
+		if (countRequest) {
+			entry.requests++;
+		}
+		if (entry.evaluator == null && !entry.failed
+				&& (entry.requests >= compileThreshold || program.getLength() >= sizeThreshold)) {
+			entry.evaluator = compile(program);
+			entry.failed = entry.evaluator == null;
+		}
+		if (entry.evaluator != null) {
+			compiledEvaluations++;
+		}
+		return entry.evaluator;
+	}
+
+	protected CompiledEvaluator compile(CompiledProgram program) {
+		byte[] classBytes = ProgramClassGenerator.generate(program);
+		if (classBytes == null) {
+			return null;
+		}
+		try {
+			// hidden classes are not strongly linked to the defining loader and are unloaded once unreachable
+			Class<?> generated = lookup.defineHiddenClass(classBytes, true).lookupClass();
+			CompiledEvaluator evaluator = (CompiledEvaluator) lookup.findConstructor(generated, MethodType.methodType(void.class))
+					.invoke();
+			compilations++;
+			return evaluator;
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+
+	public double[] evaluate(CompiledEvaluator evaluator, double[][] data) {
+		double[] outputs = new double[data.length];
+		for (int i = 0; i < outputs.length; i++) {
+			outputs[i] = evaluator.eval(data[i]);
+		}
+		return outputs;
+	}
+
+	public long getCompilations() {
+		return compilations;
+	}
+
+	public long getCompiledEvaluations() {
+		return compiledEvaluations;
+	}
+
+	public int getCacheSize() {
+		return cache.size();
+	}
+}
@@ -23,6 +23,32 @@ public class Main {
 	public static double CROSSOVER_PROBABILITY = 0.9;
 	public static boolean PRINT_AT_EACH_GENERATION = true;
 	public static boolean SHUFFLE_VALIDATION_SPLIT = false;
+	public static boolean BATCH_EVALUATION = false;
+	public static boolean VECTOR_KERNELS = true;
+	public static int SEMANTICS_CACHE_SIZE = 0;
+	public static boolean INCREMENTAL_EVALUATION = false;
+	public static int JIT_COMPILE_THRESHOLD = 0;
+	public static int JIT_SIZE_THRESHOLD = 200;
+	public static int JIT_CACHE_SIZE = 1000;
+	public static double EARLY_ABORT_FRACTION = 0;
+	public static boolean SIMPLIFICATION = false;
+	public static boolean SIMPLIFY_GENOTYPE = false;
+	public static int FITNESS_CACHE_SIZE = 0;
+	public static int SUBSAMPLE_SIZE = 0;
+	public static int SUBSAMPLE_ROTATION = 1;
+	public static int RANDOM_TREE_POOL_SIZE = 0;
+	public static int NON_DOMINATION_SORT = Population.EFFICIENT_NON_DOMINATION_SORT;
+	public static int SORT_THREADS = 1;
+	public static int MAX_DISTANCE_SWEEPS = 0;
+	public static int SKETCH_DIMENSIONS = 0;
+	public static boolean RANK_SELECTION = false;
+
+	// GSGP parameters
+	public static boolean GSGP = false;
+	public static boolean GSGP_BUILD_INDIVIDUALS = true;
+	public static double GSGP_MUTATION_STEP = 1.0;
+	public static boolean GSGP_BOUNDED_MUTATION = false;
+	public static boolean GSGP_ANCESTRY_LOG = false;
 
 	// repulsor parameters
 	public static boolean TRUE_PARETO_SELECTION = false;
@@ -92,10 +118,43 @@ public class Main {
 		Utils.log(Utils.LogTag.LOG, "\toverfit_by_n_sighted_steepness=" + OVERFIT_BY_N_SIGHTED_STEEPNESS);
 		Utils.log(Utils.LogTag.LOG, "\trepulse_with_validation_only=" + REPULSE_WITH_VALIDATION_ONLY);
 		Utils.log(Utils.LogTag.LOG, "\tdivide_and_reshuffle=" + DIVIDE_AND_RESHUFFLE);
+		Utils.log(Utils.LogTag.LOG, "\tbatch_evaluation=" + BATCH_EVALUATION);
+		Utils.log(Utils.LogTag.LOG, "\tvector_kernels=" + VECTOR_KERNELS);
+		Utils.log(Utils.LogTag.LOG, "\tsemantics_cache_size=" + SEMANTICS_CACHE_SIZE);
+		Utils.log(Utils.LogTag.LOG, "\tincremental_evaluation=" + INCREMENTAL_EVALUATION);
+		Utils.log(Utils.LogTag.LOG, "\tjit_compile_threshold=" + JIT_COMPILE_THRESHOLD);
+		Utils.log(Utils.LogTag.LOG, "\tjit_size_threshold=" + JIT_SIZE_THRESHOLD);
+		Utils.log(Utils.LogTag.LOG, "\tjit_cache_size=" + JIT_CACHE_SIZE);
+		Utils.log(Utils.LogTag.LOG, "\tearly_abort_fraction=" + EARLY_ABORT_FRACTION);
+		Utils.log(Utils.LogTag.LOG, "\tsimplification=" + SIMPLIFICATION);
+		Utils.log(Utils.LogTag.LOG, "\tsimplify_genotype=" + SIMPLIFY_GENOTYPE);
+		Utils.log(Utils.LogTag.LOG, "\tfitness_cache_size=" + FITNESS_CACHE_SIZE);
+		Utils.log(Utils.LogTag.LOG, "\tsubsample_size=" + SUBSAMPLE_SIZE);
+		Utils.log(Utils.LogTag.LOG, "\tsubsample_rotation=" + SUBSAMPLE_ROTATION);
+		Utils.log(Utils.LogTag.LOG, "\trandom_tree_pool_size=" + RANDOM_TREE_POOL_SIZE);
+		Utils.log(Utils.LogTag.LOG, "\tnon_domination_sort=" + NON_DOMINATION_SORT);
+		Utils.log(Utils.LogTag.LOG, "\tsort_threads=" + SORT_THREADS);
+		Utils.log(Utils.LogTag.LOG, "\tmax_distance_sweeps=" + MAX_DISTANCE_SWEEPS);
+		Utils.log(Utils.LogTag.LOG, "\tsketch_dimensions=" + SKETCH_DIMENSIONS);
+		Utils.log(Utils.LogTag.LOG, "\trank_selection=" + RANK_SELECTION);
+		Utils.log(Utils.LogTag.LOG, "\tgsgp=" + GSGP);
+		Utils.log(Utils.LogTag.LOG, "\tgsgp_build_individuals=" + GSGP_BUILD_INDIVIDUALS);
+		Utils.log(Utils.LogTag.LOG, "\tgsgp_mutation_step=" + GSGP_MUTATION_STEP);
+		Utils.log(Utils.LogTag.LOG, "\tgsgp_bounded_mutation=" + GSGP_BOUNDED_MUTATION);
+		Utils.log(Utils.LogTag.LOG, "\tgsgp_ancestry_log=" + GSGP_ANCESTRY_LOG);
 
+		// semantics-only GSGP offspring keep the outputs they were created with and can't be evaluated on other rows
+		if (GSGP && !GSGP_BUILD_INDIVIDUALS && SUBSAMPLE_SIZE > 0)
+			throw new IllegalArgumentException("subsample_size > 0 requires gsgp_build_individuals=1, semantics-only "
+					+ "GSGP offspring can't be evaluated on a new training subset");
+		if (GSGP && !GSGP_BUILD_INDIVIDUALS && DIVIDE_AND_RESHUFFLE > 0)
+			throw new IllegalArgumentException("divide_and_reshuffle > 0 requires gsgp_build_individuals=1, semantics-only "
+					+ "GSGP offspring can't be evaluated on a new training and validation split");
 
 		if (LOG_SEMANTICS)
 			Utils.attachLogger(""+startTime, Utils.LogTag.SEMANTICS);
+		if (GSGP && GSGP_ANCESTRY_LOG)
+			Utils.attachAncestryLogger(""+startTime);
 
 		// load training and unseen data
 		Data data = Utils.loadData(DATA_TRAIN_FILENAME, DATA_TEST_FILENAME, VALIDATION_SET_SIZE, SHUFFLE_VALIDATION_SPLIT);
@@ -109,14 +168,25 @@ public class Main {
 			Utils.log(Utils.LogTag.LOG, "\n\t\t##### Run "+(i+1)+" #####\n");
 			System.out.println("Run "+(i+1));
 
-			GpRun gp = new GpRun(data);
-			// GsgpRun gp = new GsgpRun(data);
+			GpRun gp;
+			if (GSGP) {
+				GsgpRun gsgp = new GsgpRun(data);
+				gsgp.setBuildIndividuals(GSGP_BUILD_INDIVIDUALS);
+				gsgp.setMutationStep(GSGP_MUTATION_STEP);
+				gsgp.setBoundedMutation(GSGP_BOUNDED_MUTATION);
+				gsgp.setAncestryLog(GSGP_ANCESTRY_LOG);
+				gp = gsgp;
+			} else {
+				gp = new GpRun(data);
+			}
 
 			// set parameters
 			gp.setPopulationSize(POPULATION_SIZE);
 			gp.setTrueParetoSelection(TRUE_PARETO_SELECTION);
 			gp.setTournamentSize(TOURNAMENT_SIZE);
-			gp.setApplyDepthLimit(APPLY_DEPTH_LIMIT);
+			// geometric semantic operators always grow the trees, GSGP runs without depth limit
+			if (!GSGP)
+				gp.setApplyDepthLimit(APPLY_DEPTH_LIMIT);
 			gp.setMaximumDepth(MAXIMUM_DEPTH);
 			gp.setMaximumInitialDepth(MAXIMUM_INITIAL_DEPTH);
 			gp.setCrossoverProbability(CROSSOVER_PROBABILITY);
@@ -139,18 +209,35 @@ public class Main {
 			gp.setRepulseWithValidationOnly(REPULSE_WITH_VALIDATION_ONLY);
 			gp.setDivideAndReshuffle(DIVIDE_AND_RESHUFFLE);
 			gp.setValidationSetSize(VALIDATION_SET_SIZE);
+			gp.setBatchEvaluation(BATCH_EVALUATION);
+			gp.setVectorKernels(VECTOR_KERNELS);
+			gp.setSemanticsCacheSize(SEMANTICS_CACHE_SIZE);
+			gp.setIncrementalEvaluation(INCREMENTAL_EVALUATION);
+			gp.setJitCompilation(JIT_COMPILE_THRESHOLD, JIT_SIZE_THRESHOLD, JIT_CACHE_SIZE);
+			gp.setEarlyAbortFraction(EARLY_ABORT_FRACTION);
+			gp.setSimplification(SIMPLIFICATION, SIMPLIFY_GENOTYPE);
+			gp.setFitnessCacheSize(FITNESS_CACHE_SIZE);
+			gp.setSubsampling(SUBSAMPLE_SIZE, SUBSAMPLE_ROTATION);
+			gp.setRandomTreePoolSize(RANDOM_TREE_POOL_SIZE);
+			gp.setNonDominationSort(NON_DOMINATION_SORT);
+			gp.setSortThreads(SORT_THREADS);
+			gp.setMaxDistanceSweeps(MAX_DISTANCE_SWEEPS);
+			gp.setSketchDimensions(SKETCH_DIMENSIONS);
+			gp.setRankSelection(RANK_SELECTION);
 
 			gp.initialize();
 
 			gp.evolve(NUMBER_OF_GENERATIONS);
 			Individual bestFound = gp.getCurrentBest();
-			resultsPerRun[0][i] = bestFound.getTrainingError();
+			resultsPerRun[0][i] = bestFound.getFullTrainingError();
 			resultsPerRun[1][i] = bestFound.getValidationError();
 			resultsPerRun[2][i] = bestFound.getUnseenError();
 			resultsPerRun[3][i] = bestFound.getSize();
 			resultsPerRun[4][i] = bestFound.getDepth();
 			resultsPerRun[5][i] = gp.getPopulation().getRepulsorsSize();
 			Utils.log(Utils.LogTag.LOG, "\nBest =>"+bestFound.print());
+			if (GSGP && GSGP_ANCESTRY_LOG)
+				reconstructModel(bestFound, OUTPUT_DIR+"/"+startTime+"-model"+(i+1)+".txt");
 		}
 
 		// present average results
@@ -171,6 +258,17 @@ public class Main {
 	}
 
 
+	// rebuilds the model of an individual from the ancestry log instead of keeping all its ancestors in memory
+	public static void reconstructModel(Individual individual, String outputFilename){
+		Utils.flushAncestryLogger();
+		try {
+			long records = AncestryLog.reconstruct(Utils.getAncestryFilename(), Utils.getRandomTreesFilename(), individual.getId(), outputFilename);
+			Utils.log(Utils.LogTag.LOG, "Reconstructed model of individual "+individual.getId()+" from "+records+" ancestry records: "+outputFilename);
+		} catch (Exception e){
+			Utils.log(Utils.LogTag.LOG, "ERROR: Failed reconstructing model of individual "+individual.getId()+": "+e.getMessage());
+		}
+	}
+
 	public static void parseArguments(String[] args){
 		int i = 0;
 		try {
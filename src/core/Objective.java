@@ -0,0 +1,21 @@
+package core;
+
+// the per individual values a population keeps as primitive columns
+public enum Objective {
+	TRAINING,
+	VALIDATION,
+	UNSEEN,
+	RANK,
+	OVERFIT_SEVERITY;
+
+	// the data names used by the population statistics ("training", "validation" and "test"), null for any other name
+	public static Objective fromDataName(String dataname) {
+		if (dataname.equals("training"))
+			return TRAINING;
+		else if (dataname.equals("validation"))
+			return VALIDATION;
+		else if (dataname.equals("test"))
+			return UNSEEN;
+		return null;
+	}
+}
@@ -4,6 +4,10 @@ import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import utils.Utils;
 
@@ -17,9 +21,20 @@ public class Population implements Serializable {
 	protected static int fitnessMemorySize = 0;
 	protected static boolean repulseWithValidationOnly = false;
 
+	// the textbook O(M * N^2) sort, or a sweep (aggregated repulsors) / efficient non-dominated sort (one objective per repulsor)
+	public static final int FAST_NON_DOMINATION_SORT = 0;
+	public static final int EFFICIENT_NON_DOMINATION_SORT = 1;
+	protected static int nonDominationSort = EFFICIENT_NON_DOMINATION_SORT;
+	// calculateMaxDistance compares all pairs (0), or estimates the distances from this many farthest point sweeps
+	protected static int maxDistanceSweeps = 0;
+	// distances and the fast non domination sort are split over this pool if more than one thread is configured
+	protected static ForkJoinPool sortPool = null;
+	// individuals handled by one task without splitting further
+	protected static final int SORT_TASK_SIZE = 64;
+
 	protected ArrayList<Individual> individuals;
 
-	protected ArrayList<Individual> repulsors;
+	protected RepulsorArchive repulsors;
 
 	// list of n previous fitness values [training, validation], sorted that the element index 0 is the oldest
 	protected ArrayList<Double[]> fitnessMemory;
@@ -27,18 +42,39 @@ public class Population implements Serializable {
 	protected double maximumDistance;
 	protected double combinedMaximumDistance;
 
+	// incremented whenever individuals are added or removed
+	protected transient long modificationCount;
+	// the values of all individuals per objective, see getColumn(Objective)
+	protected transient double[][] columns = new double[Objective.values().length][];
+	protected transient long[] columnModificationCounts = new long[Objective.values().length];
+	protected transient long[] columnIndividualModificationCounts = new long[Objective.values().length];
+	protected transient long[] columnVersionSums = new long[Objective.values().length];
+	// order statistics per objective, see getSortedIndices(Objective)
+	protected transient int[][] sortedIndices = new int[Objective.values().length][];
+	protected transient double[][] sortedFitness = new double[Objective.values().length][];
+	protected transient long[] sortedModificationCounts = new long[Objective.values().length];
+	protected transient long[] sortedIndividualModificationCounts = new long[Objective.values().length];
+	protected transient long[] sortedVersionSums = new long[Objective.values().length];
+
+	// objectives of the current non domination sort, calculated once instead of in every comparison:
+	// distance of individual i to repulsor r at [i * number of repulsors + r]
+	protected transient double[] repulsorDistances;
+	protected transient double[] averageRepulsorDistances;
+	protected transient boolean[] isRepulsor;
+	protected transient double[] trainingErrors;
+
 	public Population(boolean trueParetoSelection, boolean dominationExcludeFitness, boolean mergeRepulsors) {
 		Population.mergeRepulsors = mergeRepulsors;
 		Population.dominationExcludeFitness = dominationExcludeFitness;
 		Population.trueParetoSelection = trueParetoSelection;
 
 		individuals = new ArrayList<Individual>();
-		repulsors = new ArrayList<Individual>();
+		repulsors = new RepulsorArchive();
 		fitnessMemory = new ArrayList<Double[]>();
 	}
 	public Population() {
 		individuals = new ArrayList<Individual>();
-		repulsors = new ArrayList<Individual>();
+		repulsors = new RepulsorArchive();
 		fitnessMemory = new ArrayList<Double[]>();
 	}
 
@@ -48,6 +84,17 @@ public class Population implements Serializable {
 	public static void setRepulseWithValidationOnly(boolean flag){
 		Population.repulseWithValidationOnly = flag; 
 	}
+	public static void setNonDominationSort(int algorithm){
+		Population.nonDominationSort = algorithm;
+	}
+	public static void setMaxDistanceSweeps(int sweeps){
+		Population.maxDistanceSweeps = sweeps;
+	}
+	public static void setSortThreads(int threads){
+		if (Population.sortPool != null)
+			Population.sortPool.shutdown();
+		Population.sortPool = threads > 1 ? new ForkJoinPool(threads) : null;
+	}
 
 	// return best individual solely based on fitness
 	public Individual getBest() {
@@ -118,57 +165,183 @@ public class Population implements Serializable {
 
 	// return best individual solely based on fitness
 	public int getBestIndex(String dataname) {
-		int bestIndex = 0;
-		double bestFitness = 0;
-		if (dataname.equals("training")){
-			bestFitness = individuals.get(bestIndex).getTrainingError();
-		} else if (dataname.equals("validation")){
-			bestFitness = individuals.get(bestIndex).getValidationError();
-		} else if (dataname.equals("test")){
-			bestFitness = individuals.get(bestIndex).getUnseenError();
-		}
-		for (int i = 1; i < individuals.size(); i++) {
-			double f = 0;
-			if (dataname.equals("training")){
-				f = individuals.get(i).getTrainingError();
-			} else if (dataname.equals("validation")){
-				f = individuals.get(i).getValidationError();
-			} else if (dataname.equals("test")){
-				f = individuals.get(i).getUnseenError();
-			}
-			if (f < bestFitness) {
-				bestFitness = f;
-				bestIndex = i;
-			}
-		}
-		return bestIndex;
+		return getBestIndex(Objective.fromDataName(dataname));
+	}
+
+	public int getBestIndex(Objective objective) {
+		// an undefined fitness of the first individual is never improved on
+		if (Double.isNaN(getColumn(objective)[0]))
+			return 0;
+		return getSortedIndices(objective)[0];
 	}
 
-	// return best n individuals solely based on fitness
+	// return best n individuals solely based on fitness (individuals with equal fitness in population order),
+	// positions beyond the population size are 0
 	public int[] getBestIndex(int count) {
-		ArrayList<Integer> sorted = new ArrayList<Integer>();
-		sorted.add(0);
-		for (int i = 1; i < individuals.size(); i++){
-			double indTe = individuals.get(i).getTrainingError();
-			boolean added = false;
-			for (int p = 0; p < sorted.size(); p++){
-				if (individuals.get(sorted.get(p)).getTrainingError() <= indTe) continue;
-				sorted.add(p, i);
-				added=true;
-				break;
+		int[] arr = new int[count];
+		int size = Math.min(count, individuals.size());
+		if (isSortedIndexValid(Objective.TRAINING)){
+			System.arraycopy(sortedIndices[Objective.TRAINING.ordinal()], 0, arr, 0, size);
+		} else {
+			System.arraycopy(selectBestIndices(Objective.TRAINING, size), 0, arr, 0, size);
+		}
+		return arr;
+	}
+
+	// the count best individuals without sorting the whole population: a heap of the count best seen so far, with the
+	// worst of them at the root, in O(N log count)
+	protected int[] selectBestIndices(Objective objective, int count){
+		if (count == 0)
+			return new int[0];
+		double[] fitness = getColumn(objective);
+		int[] heap = new int[count];
+		int heapSize = 0;
+		for (int i = 0; i < fitness.length; i++){
+			if (heapSize < count){
+				// sift up
+				int position = heapSize++;
+				while (position > 0 && isWorse(i, heap[(position - 1) / 2], fitness)){
+					heap[position] = heap[(position - 1) / 2];
+					position = (position - 1) / 2;
+				}
+				heap[position] = i;
+			} else if (isWorse(heap[0], i, fitness)){
+				// replace the root and sift down
+				int position = 0;
+				while (true){
+					int child = 2 * position + 1;
+					if (child >= count)
+						break;
+					if (child + 1 < count && isWorse(heap[child + 1], heap[child], fitness))
+						child++;
+					if (!isWorse(heap[child], i, fitness))
+						break;
+					heap[position] = heap[child];
+					position = child;
+				}
+				heap[position] = i;
 			}
-			if (!added)
-				sorted.add(i);
 		}
-		int[] arr = new int[count];
-		for(int i = 0; i < count; i++) {
-			if (sorted.get(i) != null) {
-				arr[i] = sorted.get(i);
+		Arrays.sort(heap);
+		return sortIndices(heap, count, fitness);
+	}
+
+	// worse fitness, or equal fitness and later in the population
+	protected static boolean isWorse(int i, int j, double[] fitness){
+		int comparison = Double.compare(fitness[i], fitness[j]);
+		return comparison > 0 || (comparison == 0 && i > j);
+	}
+
+	// the value of every individual in population order, filled on first use and kept until the individuals or any of
+	// their values change (an unknown objective has all values 0); unseen errors are only evaluated if requested
+	public double[] getColumn(Objective objective){
+		int size = individuals.size();
+		if (objective == null)
+			return new double[size];
+		int o = objective.ordinal();
+		if (columns[o] == null || columns[o].length != size || columnModificationCounts[o] != modificationCount
+				|| !areValuesUnchanged(objective, columnIndividualModificationCounts, columnVersionSums)){
+			double[] column = columns[o] != null && columns[o].length == size ? columns[o] : new double[size];
+			switch (objective){
+				case TRAINING:
+					for (int i = 0; i < size; i++)
+						column[i] = individuals.get(i).getTrainingError();
+					break;
+				case VALIDATION:
+					for (int i = 0; i < size; i++)
+						column[i] = individuals.get(i).getValidationError();
+					break;
+				case UNSEEN:
+					for (int i = 0; i < size; i++)
+						column[i] = individuals.get(i).getUnseenError();
+					break;
+				case RANK:
+					for (int i = 0; i < size; i++)
+						column[i] = individuals.get(i).getRank();
+					break;
+				case OVERFIT_SEVERITY:
+					for (int i = 0; i < size; i++)
+						column[i] = individuals.get(i).getOverfitSeverity();
+					break;
 			}
+			columns[o] = column;
+			columnModificationCounts[o] = modificationCount;
+			// the unseen error might have been evaluated just now, which does not change any error
+			columnIndividualModificationCounts[o] = getIndividualModificationCount(objective);
+			columnVersionSums[o] = getVersionSum(objective);
 		}
-		return arr;
+		return columns[o];
+	}
+
+	// whether no value of the own individuals changed since the counts were recorded: the count of all individuals
+	// tells in constant time that nothing changed, otherwise the versions of the own individuals are summed (they only
+	// grow, so the sum only stays the same if none of them changed) and the count is recorded again
+	protected boolean areValuesUnchanged(Objective objective, long[] modificationCounts, long[] versionSums){
+		int o = objective.ordinal();
+		long individualModificationCount = getIndividualModificationCount(objective);
+		if (modificationCounts[o] == individualModificationCount)
+			return true;
+		if (versionSums[o] != getVersionSum(objective))
+			return false;
+		modificationCounts[o] = individualModificationCount;
+		return true;
 	}
 
+	protected long getVersionSum(Objective objective){
+		boolean rank = objective == Objective.RANK || objective == Objective.OVERFIT_SEVERITY;
+		long sum = 0;
+		for (int i = 0; i < individuals.size(); i++)
+			sum += rank ? individuals.get(i).getRankVersion() : individuals.get(i).getErrorVersion();
+		return sum;
+	}
+
+	protected static long getIndividualModificationCount(Objective objective){
+		if (objective == Objective.RANK || objective == Objective.OVERFIT_SEVERITY)
+			return Individual.getRankModificationCount();
+		return Individual.getErrorModificationCount();
+	}
+
+	protected boolean isSortedIndexValid(Objective objective){
+		int o = objective.ordinal();
+		return sortedIndices[o] != null && sortedModificationCounts[o] == modificationCount
+				&& areValuesUnchanged(objective, sortedIndividualModificationCounts, sortedVersionSums);
+	}
+
+	// indices of the individuals by increasing value (undefined values last), kept until the individuals or any values change
+	protected int[] getSortedIndices(Objective objective){
+		if (objective == null){
+			// every value of an unknown objective is 0, the population order is sorted
+			int[] indices = new int[individuals.size()];
+			for (int i = 0; i < indices.length; i++)
+				indices[i] = i;
+			return indices;
+		}
+		if (!isSortedIndexValid(objective)){
+			int o = objective.ordinal();
+			int size = individuals.size();
+			double[] fitness = getColumn(objective);
+			int[] indices = new int[size];
+			for (int i = 0; i < size; i++)
+				indices[i] = i;
+			int[] sorted = sortIndices(indices, size, fitness);
+			double[] values = new double[size];
+			for (int k = 0; k < size; k++)
+				values[k] = fitness[sorted[k]];
+			sortedIndices[o] = sorted;
+			sortedFitness[o] = values;
+			sortedModificationCounts[o] = modificationCount;
+			sortedIndividualModificationCounts[o] = getIndividualModificationCount(objective);
+			sortedVersionSums[o] = getVersionSum(objective);
+		}
+		return sortedIndices[objective.ordinal()];
+	}
+
+	protected double[] getSortedFitness(Objective objective){
+		if (objective == null)
+			return new double[individuals.size()];
+		getSortedIndices(objective);
+		return sortedFitness[objective.ordinal()];
+	}
 
 	// return least overfitting individual
 	public Individual getLeastOverfitting() {
@@ -206,39 +379,30 @@ public class Population implements Serializable {
 	}
 
 	public int getWorstIndex(String dataname) {
-		int worstIndex = 0;
-		double worstError = 0;
-		int i = 0;
-		do {
-			double f = 0;
-			if (dataname.equals("training")){
-				f = individuals.get(i).getTrainingError();
-			} else if (dataname.equals("validation")){
-				f = individuals.get(i).getValidationError();
-			} else if (dataname.equals("test")){
-				f = individuals.get(i).getUnseenError();
-			}
-			if (i == 0 || f > worstError) {
-				worstError = f;
-				worstIndex = i;
-			}
-			i++;
-		} while (i < individuals.size());
-		return worstIndex;
+		return getWorstIndex(Objective.fromDataName(dataname));
+	}
+
+	public int getWorstIndex(Objective objective) {
+		// an undefined fitness of the first individual is never exceeded
+		if (Double.isNaN(getColumn(objective)[0]))
+			return 0;
+		int[] sorted = getSortedIndices(objective);
+		double[] values = getSortedFitness(objective);
+		int position = values.length - 1;
+		while (Double.isNaN(values[position]))
+			position--;
+		// the first individual with the worst fitness
+		while (position > 0 && values[position - 1] == values[position])
+			position--;
+		return sorted[position];
 	}
 
 	public double getMedianFitness(String dataname){
-		double[] fitness = new double[individuals.size()];
-		for (int i = 0; i < individuals.size(); i++){
-			if (dataname.equals("training")){
-				fitness[i] = individuals.get(i).getTrainingError();
-			} else if (dataname.equals("validation")){
-				fitness[i] = individuals.get(i).getValidationError();
-			} else if (dataname.equals("test")){
-				fitness[i] = individuals.get(i).getUnseenError();
-			}
-		}
-		Arrays.sort(fitness);
+		return getMedianFitness(Objective.fromDataName(dataname));
+	}
+
+	public double getMedianFitness(Objective objective){
+		double[] fitness = getSortedFitness(objective);
 		if (fitness.length%2 > 0){
 			return fitness[(fitness.length/2)];
 		} else {
@@ -246,63 +410,148 @@ public class Population implements Serializable {
 		}
 	}
 
+	// the fitness below which the given fraction of the population lies
+	public double getFitnessQuantile(String dataname, double fraction){
+		return getFitnessQuantile(Objective.fromDataName(dataname), fraction);
+	}
+
+	public double getFitnessQuantile(Objective objective, double fraction){
+		double[] fitness = getSortedFitness(objective);
+		int index = (int) Math.ceil(fraction * fitness.length) - 1;
+		return fitness[Math.max(0, Math.min(fitness.length - 1, index))];
+	}
+
 	public double getAverageFitness(String dataname){
+		return getAverageFitness(Objective.fromDataName(dataname));
+	}
+
+	public double getAverageFitness(Objective objective){
+		double[] values = getColumn(objective);
 		double avg = 0;
-		for (int i = 0; i < individuals.size(); i++){
-			double f = 0;
-			if (dataname.equals("training")){
-				avg += individuals.get(i).getTrainingError();
-			} else if (dataname.equals("validation")){
-				avg += individuals.get(i).getValidationError();
-			} else if (dataname.equals("test")){
-				avg += individuals.get(i).getUnseenError();
-			}
-		}
-		return avg/individuals.size();
+		for (int i = 0; i < values.length; i++)
+			avg += values[i];
+		return avg/values.length;
 	}
 
 	public double getStandardDeviation(String dataname){
-		double[] values = new double[individuals.size()];
-		for (int i = 0; i < individuals.size(); i++){
-			double f = 0;
-			if (dataname.equals("training")){
-				values[i] = individuals.get(i).getTrainingError();
-			} else if (dataname.equals("validation")){
-				values[i] = individuals.get(i).getValidationError();
-			} else if (dataname.equals("test")){
-				values[i] = individuals.get(i).getUnseenError();
+		return getStandardDeviation(Objective.fromDataName(dataname));
+	}
+
+	public double getStandardDeviation(Objective objective){
+		return Utils.getStdDev(getColumn(objective));
+	}
+
+	// maximum distance between two individuals on training data (root mean squared difference), and on training
+	// and validation data (squared differences summed over both, divided by the number of validation rows)
+	public void calculateMaxDistance(){
+		int numberOfIndividuals = individuals.size();
+		if (numberOfIndividuals < 2){
+			this.maximumDistance = 0;
+			this.combinedMaximumDistance = 0;
+			return;
+		}
+		// semantics as rows of a flat matrix, training outputs followed by validation outputs
+		int trainingLength = individuals.get(0).getTrainingDataOutputs().length;
+		double[] validationOutputs = individuals.get(0).getValidationDataOutputs();
+		int validationLength = validationOutputs == null ? 0 : validationOutputs.length;
+		int columns = trainingLength + validationLength;
+		double[] semantics = new double[numberOfIndividuals * columns];
+		for (int i = 0; i < numberOfIndividuals; i++){
+			Individual individual = individuals.get(i);
+			System.arraycopy(individual.getTrainingDataOutputs(), 0, semantics, i * columns, trainingLength);
+			if (validationLength > 0)
+				System.arraycopy(individual.getValidationDataOutputs(), 0, semantics, i * columns + trainingLength, validationLength);
+		}
+		if (maxDistanceSweeps > 0){
+			this.maximumDistance = estimateMaxDistance(semantics, numberOfIndividuals, columns, trainingLength, trainingLength);
+			this.combinedMaximumDistance = estimateMaxDistance(semantics, numberOfIndividuals, columns, columns, validationLength);
+		} else {
+			calculateMaxDistance(semantics, numberOfIndividuals, columns, trainingLength, validationLength);
+		}
+	}
+
+	// compares all pairs, each row with the rows after it (split into blocks of rows on the sort pool)
+	protected void calculateMaxDistance(final double[] semantics, final int numberOfIndividuals, final int columns,
+			final int trainingLength, final int validationLength){
+		// largest sums of squared differences per row, to avoid sharing a maximum between tasks
+		final double[] rowMaxima = new double[numberOfIndividuals];
+		final double[] combinedRowMaxima = new double[numberOfIndividuals];
+		Block block = new Block() {
+			public void compute(int start, int end) {
+				for (int i = start; i < end; i++){
+					int row1 = i * columns;
+					double max = 0;
+					double combinedMax = 0;
+					for (int j = i + 1; j < numberOfIndividuals; j++){
+						int row2 = j * columns;
+						double d = 0;
+						for (int s = 0; s < trainingLength; s++){
+							double difference = semantics[row2 + s] - semantics[row1 + s];
+							d += difference * difference;
+						}
+						double d_c = d;
+						for (int s = trainingLength; s < columns; s++){
+							double difference = semantics[row2 + s] - semantics[row1 + s];
+							d_c += difference * difference;
+						}
+						if (d > max)
+							max = d;
+						if (d_c > combinedMax)
+							combinedMax = d_c;
+					}
+					rowMaxima[i] = max;
+					combinedRowMaxima[i] = combinedMax;
+				}
 			}
+		};
+		if (sortPool == null){
+			block.compute(0, numberOfIndividuals - 1);
+		} else {
+			sortPool.invoke(new BlockTask(block, 0, numberOfIndividuals - 1));
+		}
+		double max = 0;
+		double combinedMax = 0;
+		for (int i = 0; i < numberOfIndividuals - 1; i++){
+			max = Math.max(max, rowMaxima[i]);
+			combinedMax = Math.max(combinedMax, combinedRowMaxima[i]);
 		}
-		return Utils.getStdDev(values);
+		this.maximumDistance = Math.sqrt(max / trainingLength);
+		this.combinedMaximumDistance = Math.sqrt(combinedMax / validationLength);
 	}
 
-	public void calculateMaxDistance(){
-		double maxD = 0;
-		double cMaxD = 0;
-		for (int i = 0; i < individuals.size()-1; i++){
-			Individual ind1 = individuals.get(i);
-			int sems_length = ind1.getTrainingDataOutputs().length;
-			for (int j = i+1; j < individuals.size(); j++){
+	// lower bound of the maximum distance on the first length columns from farthest point sweeps: starting at the
+	// first individual, every sweep moves to the individual farthest from the current one. Every distance is at most
+	// the sum of the distances of both individuals to any individual x, so the maximum distance lies in
+	// [estimate, 2 * estimate] (the estimate is at least half of it, and exact for data on a line)
+	protected double estimateMaxDistance(double[] semantics, int numberOfIndividuals, int columns, int length, int divisor){
+		double max = 0;
+		int current = 0;
+		int previous = -1;
+		for (int sweep = 0; sweep < maxDistanceSweeps; sweep++){
+			int row1 = current * columns;
+			int farthest = current;
+			double farthestDistance = 0;
+			for (int j = 0; j < numberOfIndividuals; j++){
+				int row2 = j * columns;
 				double d = 0;
-				Individual ind2 =  individuals.get(j);
-				for (int s = 0; s < sems_length; s++){
-					d += (ind2.getTrainingDataOutputs()[s]-ind1.getTrainingDataOutputs()[s])*(ind2.getTrainingDataOutputs()[s]-ind1.getTrainingDataOutputs()[s]);
+				for (int s = 0; s < length; s++){
+					double difference = semantics[row2 + s] - semantics[row1 + s];
+					d += difference * difference;
 				}
-				double d_c = d;
-				d = Math.sqrt(d / sems_length);
-				if (d > maxD)
-					maxD = d;
-				// add validation distance to d_c
-				for (int s = 0; s < ind1.getValidationDataOutputs().length; s++){
-					d_c += (ind2.getValidationDataOutputs()[s]-ind1.getValidationDataOutputs()[s])*(ind2.getValidationDataOutputs()[s]-ind1.getValidationDataOutputs()[s]);
+				if (d > farthestDistance){
+					farthestDistance = d;
+					farthest = j;
 				}
-				d_c = Math.sqrt(d_c / ind1.getValidationDataOutputs().length);
-				if (d_c > maxD)
-					cMaxD = d_c;
 			}
+			if (farthestDistance > max)
+				max = farthestDistance;
+			// moving back and forth between the same two individuals finds nothing new
+			if (farthest == previous || farthest == current)
+				break;
+			previous = current;
+			current = farthest;
 		}
-		this.maximumDistance = maxD;
-		this.combinedMaximumDistance = cMaxD;
+		return Math.sqrt(max / divisor);
 	}
 
 	public void addToMemory(Individual individual){
@@ -322,10 +571,12 @@ public class Population implements Serializable {
 
 	public void addIndividual(Individual individual) {
 		individuals.add(individual);
+		modificationCount++;
 	}
 
 	public void removeIndividual(int index) {
 		individuals.remove(index);
+		modificationCount++;
 	}
 
 	public int getSize() {
@@ -352,6 +603,24 @@ public class Population implements Serializable {
 		return repulsors.get(i);
 	}
 
+	// evaluates the repulsors on changed data, so that their semantics refer to the same rows as the individuals
+	public void reevaluateRepulsors(Data data) {
+		for (int i = 0; i < repulsors.size(); i++) {
+			repulsors.get(i).reevaluate(data);
+		}
+		repulsors.updateAll();
+	}
+
+	// re-indexes the repulsors after some of them were evaluated again as members of the population
+	public void updateRepulsors() {
+		repulsors.updateAll();
+	}
+
+	// whether the combined semantic distance of the individual to any repulsor is below the given distance
+	public boolean isCloserToAnyRepulsorThan(Individual individual, double distance) {
+		return repulsors.isAnyCloserThan(individual, distance);
+	}
+
 	public Individual getIndividual(int index) {
 		return individuals.get(index);
 	}
@@ -361,22 +630,8 @@ public class Population implements Serializable {
 	}
 	public boolean addRepulsor(Individual newRepulsor, int maxNum, boolean ignoreSeverity, double equalityDelta) {
 		double[] semantics = newRepulsor.getTrainingDataOutputs();
-		boolean add = true;
 		// add semantics if not already in list of repulsors
-		for (int r = 0; r < repulsors.size(); r++){
-			boolean same = true;
-			for (int d = 0; d<getRepulsorSemantics(r).length; d++){
-				if (semantics[d]!=getRepulsorSemantics(r)[d]){
-					same = false;
-					break;
-				}
-			}
-			if (same){
-				add = false;
-				break;
-			}
-
-		}
+		boolean add = !repulsors.containsTrainingSemantics(semantics);
 		if (add){
 			if ((repulsors.size() < maxNum) || (maxNum < 0)){
 				repulsors.add(newRepulsor);
@@ -415,21 +670,18 @@ public class Population implements Serializable {
 		int idx1=-1;
 		int idx2=-1;
 		double d=-1;
-		for (int r1 = 0; r1 < repulsors.size()-1; r1++){
-			for (int r2 = r1+1; r2 < repulsors.size(); r2++){
-				double dist = repulsors.get(r1).calculateCombinedSemanticDistance(
-						repulsors.get(r2).getTrainingDataOutputs(), repulsors.get(r2).getValidationDataOutputs()
-					);
-				if (dist < d || d == -1){
-					idx1 = r1;
-					idx2 = r2;
-					d = dist;
-				}
-			}
+		int[] closestPair = repulsors.findClosestPair();
+		if (closestPair != null){
+			idx1 = closestPair[0];
+			idx2 = closestPair[1];
+			d = repulsors.get(idx1).calculateCombinedSemanticDistance(
+					repulsors.get(idx2).getTrainingDataOutputs(), repulsors.get(idx2).getValidationDataOutputs()
+				);
 		}
 		if (idx1 != -1 && idx2 != -1 && (maxDistance < 0 || maxDistance >= d)){
 			//System.out.println("Merged repulser: "+idx1+" with "+idx2);
 			repulsors.get(idx1).mergeWith(repulsors.get(idx2));
+			repulsors.update(idx1);
 			repulsors.remove(idx2);
 			return idx2;
 		}
@@ -446,6 +698,14 @@ public class Population implements Serializable {
 			return;
 		}
 
+		if (nonDominationSort == EFFICIENT_NON_DOMINATION_SORT){
+			setRanks(calculateRanks(aggregateRepulsors));
+			return;
+		} else if (sortPool != null){
+			setRanks(calculateRanksInParallel(aggregateRepulsors));
+			return;
+		}
+
 		// prepare structures
 		ArrayList<Integer> dominationFront = new ArrayList<Integer>(); // containing the indexes of the current front
 		int[] dominationCounts = new int[individuals.size()];	// for each individual the number of individuals that dominate it are saved here
@@ -473,7 +733,293 @@ public class Population implements Serializable {
 
 	}
 
+	protected void setRanks(int[] ranks){
+		int maximumRank = 0;
+		for (int i = 0; i < individuals.size(); i++){
+			individuals.get(i).setRank(ranks[i]);
+			maximumRank = Math.max(maximumRank, ranks[i]);
+		}
+		int[] frontSizes = new int[maximumRank + 1];
+		for (int i = 0; i < ranks.length; i++){
+			frontSizes[ranks[i] - 1]++;
+		}
+		for (int front = 0; front < frontSizes.length; front++){
+			Utils.log(Utils.LogTag.LOG,"\tIndividuals in Front "+front+": "+frontSizes[front]);
+		}
+	}
+
+	// performFastNonDominationSort and extractNextFront on the sort pool: every task owns a block of individuals and
+	// records whom they dominate and how often they are dominated, so no results have to be merged; fronts are
+	// extracted in parallel and sorted, which makes the ranks independent of the scheduling
+	public int[] calculateRanksInParallel(final boolean aggregateRepulsors){
+		calculateRepulsorDistances();
+		final int numberOfIndividuals = individuals.size();
+		final int[][] dominatedIndividuals = new int[numberOfIndividuals][];
+		final AtomicIntegerArray dominationCounts = new AtomicIntegerArray(numberOfIndividuals);
+		sortPool.invoke(new BlockTask(new Block() {
+			public void compute(int start, int end) {
+				int[] dominated = new int[numberOfIndividuals];
+				for (int i = start; i < end; i++){
+					int numberOfDominated = 0;
+					int count = 0;
+					for (int j = 0; j < numberOfIndividuals; j++){
+						if (i == j) continue;
+						if (dominates(i, j, aggregateRepulsors))
+							dominated[numberOfDominated++] = j;
+						else if (dominates(j, i, aggregateRepulsors))
+							count++;
+					}
+					dominatedIndividuals[i] = Arrays.copyOf(dominated, numberOfDominated);
+					dominationCounts.set(i, count);
+				}
+			}
+		}, 0, numberOfIndividuals));
+
+		int[] ranks = new int[numberOfIndividuals];
+		int[] front = new int[numberOfIndividuals];
+		int frontSize = 0;
+		for (int i = 0; i < numberOfIndividuals; i++){
+			if (dominationCounts.get(i) == 0)
+				front[frontSize++] = i;
+		}
+		front = Arrays.copyOf(front, frontSize);
+		int rank = 1;
+		while (front.length > 0){
+			for (int i : front)
+				ranks[i] = rank;
+			front = sortPool.invoke(new FrontTask(front, 0, front.length, dominatedIndividuals, dominationCounts));
+			Arrays.sort(front);
+			rank++;
+		}
+		return ranks;
+	}
+
+	// work on the individuals [start, end[ that does not depend on other blocks
+	protected interface Block {
+		void compute(int start, int end);
+	}
+
+	// runs a block on [start, end[ split into parts of at most SORT_TASK_SIZE individuals
+	protected static class BlockTask extends RecursiveAction {
+		private static final long serialVersionUID = 7L;
+
+		protected Block block;
+		protected int start, end;
+
+		protected BlockTask(Block block, int start, int end) {
+			this.block = block;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute() {
+			if (end - start <= SORT_TASK_SIZE) {
+				block.compute(start, end);
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			invokeAll(new BlockTask(block, start, middle), new BlockTask(block, middle, end));
+		}
+	}
+
+	// removes the members of a front from the domination counts, returns the individuals not dominated anymore
+	protected static class FrontTask extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 7L;
+
+		protected int[] front;
+		protected int start, end;
+		protected int[][] dominatedIndividuals;
+		protected AtomicIntegerArray dominationCounts;
+
+		protected FrontTask(int[] front, int start, int end, int[][] dominatedIndividuals, AtomicIntegerArray dominationCounts) {
+			this.front = front;
+			this.start = start;
+			this.end = end;
+			this.dominatedIndividuals = dominatedIndividuals;
+			this.dominationCounts = dominationCounts;
+		}
+
+		protected int[] compute() {
+			if (end - start <= SORT_TASK_SIZE) {
+				int size = 0;
+				for (int f = start; f < end; f++)
+					size += dominatedIndividuals[front[f]].length;
+				int[] nextFront = new int[size];
+				int nextFrontSize = 0;
+				for (int f = start; f < end; f++){
+					for (int q : dominatedIndividuals[front[f]]){
+						// exactly one task sees the count drop to zero
+						if (dominationCounts.decrementAndGet(q) == 0)
+							nextFront[nextFrontSize++] = q;
+					}
+				}
+				return Arrays.copyOf(nextFront, nextFrontSize);
+			}
+			int middle = (start + end) >>> 1;
+			FrontTask left = new FrontTask(front, start, middle, dominatedIndividuals, dominationCounts);
+			FrontTask right = new FrontTask(front, middle, end, dominatedIndividuals, dominationCounts);
+			left.fork();
+			int[] rightFront = right.compute();
+			int[] leftFront = left.join();
+			int[] nextFront = Arrays.copyOf(leftFront, leftFront.length + rightFront.length);
+			System.arraycopy(rightFront, 0, nextFront, leftFront.length, rightFront.length);
+			return nextFront;
+		}
+	}
+
+	// the ranks performFastNonDominationSort and extractNextFront assign: dominance is a strict partial order on the
+	// individuals not coinciding with a repulsor, their rank is the length of the longest chain of individuals
+	// dominating them; individuals coinciding with a repulsor are dominated by all others and form the last front
+	public int[] calculateRanks(boolean aggregateRepulsors){
+		calculateRepulsorDistances();
+		int[] ranks = new int[individuals.size()];
+		int[] candidates = new int[individuals.size()];
+		int numberOfCandidates = 0;
+		for (int i = 0; i < individuals.size(); i++){
+			if (!isRepulsor[i])
+				candidates[numberOfCandidates++] = i;
+		}
+		if (aggregateRepulsors)
+			sweepSort(candidates, numberOfCandidates, ranks);
+		else
+			efficientNonDominatedSort(candidates, numberOfCandidates, ranks);
+		int maximumRank = 0;
+		for (int c = 0; c < numberOfCandidates; c++){
+			maximumRank = Math.max(maximumRank, ranks[candidates[c]]);
+		}
+		for (int i = 0; i < individuals.size(); i++){
+			if (isRepulsor[i])
+				ranks[i] = maximumRank + 1;
+		}
+		return ranks;
+	}
+
+	// two objectives (training error and average repulsor distance) in O(N log N): individuals are visited by increasing
+	// error, a fenwick tree over the distances holds the highest rank of the visited individuals further away
+	protected void sweepSort(int[] candidates, int numberOfCandidates, int[] ranks){
+		// an individual with an undefined objective neither dominates nor is dominated
+		int[] comparable = new int[numberOfCandidates];
+		int numberOfComparable = 0;
+		for (int c = 0; c < numberOfCandidates; c++){
+			int i = candidates[c];
+			if (Double.isNaN(trainingErrors[i]) || Double.isNaN(averageRepulsorDistances[i]))
+				ranks[i] = 1;
+			else
+				comparable[numberOfComparable++] = i;
+		}
+		// adding 0.0 turns -0.0 into 0.0, the two compare equal in dominates()
+		double[] errors = new double[individuals.size()];
+		double[] distances = new double[numberOfComparable];
+		for (int c = 0; c < numberOfComparable; c++){
+			errors[comparable[c]] = trainingErrors[comparable[c]] + 0.0;
+			distances[c] = averageRepulsorDistances[comparable[c]] + 0.0;
+		}
+		int[] order = sortIndices(comparable, numberOfComparable, errors);
+		Arrays.sort(distances);
+		int numberOfDistances = 0;
+		for (int c = 0; c < numberOfComparable; c++){
+			if (c == 0 || distances[c] != distances[numberOfDistances - 1])
+				distances[numberOfDistances++] = distances[c];
+		}
+		// position p holds the individuals with the p-th largest distance (1 based)
+		int[] tree = new int[numberOfDistances + 1];
+		int[] positions = new int[numberOfComparable];
+		int start = 0;
+		while (start < numberOfComparable){
+			// individuals with equal error do not dominate each other, rank all of them before adding them
+			int end = start + 1;
+			while (end < numberOfComparable && errors[order[end]] == errors[order[start]])
+				end++;
+			for (int k = start; k < end; k++){
+				int i = order[k];
+				positions[k] = numberOfDistances - Arrays.binarySearch(distances, 0, numberOfDistances, averageRepulsorDistances[i] + 0.0);
+				int rank = 0;
+				for (int p = positions[k] - 1; p > 0; p -= p & -p){
+					rank = Math.max(rank, tree[p]);
+				}
+				ranks[i] = rank + 1;
+			}
+			for (int k = start; k < end; k++){
+				for (int p = positions[k]; p <= numberOfDistances; p += p & -p){
+					tree[p] = Math.max(tree[p], ranks[order[k]]);
+				}
+			}
+			start = end;
+		}
+	}
+
+	// one objective per repulsor (ENS-BS): every dominating individual comes first in the order of the first objective,
+	// and if a front holds none of them neither does any later front, so the front is found by binary search
+	protected void efficientNonDominatedSort(int[] candidates, int numberOfCandidates, int[] ranks){
+		int numberOfRepulsors = repulsors.size();
+		double[] keys = new double[individuals.size()];
+		for (int c = 0; c < numberOfCandidates; c++){
+			int i = candidates[c];
+			if (Population.dominationExcludeFitness)
+				keys[i] = -repulsorDistances[i * numberOfRepulsors];
+			else
+				keys[i] = trainingErrors[i];
+		}
+		int[] order = sortIndices(candidates, numberOfCandidates, keys);
+		// fronts as linked lists, the most recently added individual first
+		int[] frontHeads = new int[numberOfCandidates];
+		int[] nextInFront = new int[individuals.size()];
+		int numberOfFronts = 0;
+		for (int k = 0; k < numberOfCandidates; k++){
+			int i = order[k];
+			int low = 0;
+			int high = numberOfFronts;
+			while (low < high){
+				int middle = (low + high) >>> 1;
+				if (frontDominates(frontHeads[middle], nextInFront, i))
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			if (low == numberOfFronts){
+				frontHeads[numberOfFronts++] = -1;
+			}
+			nextInFront[i] = frontHeads[low];
+			frontHeads[low] = i;
+			ranks[i] = low + 1;
+		}
+	}
+
+	protected boolean frontDominates(int head, int[] nextInFront, int i){
+		for (int j = head; j != -1; j = nextInFront[j]){
+			if (dominates(j, i, false))
+				return true;
+		}
+		return false;
+	}
+
+	// the first count indices ordered by their key (undefined keys last), equal keys keep their order
+	protected static int[] sortIndices(int[] indices, int count, double[] keys){
+		int[] sorted = Arrays.copyOf(indices, count);
+		int[] buffer = new int[count];
+		// bottom up merge sort
+		for (int width = 1; width < count; width *= 2){
+			for (int start = 0; start < count; start += 2 * width){
+				int middle = Math.min(start + width, count);
+				int end = Math.min(start + 2 * width, count);
+				int left = start;
+				int right = middle;
+				for (int k = start; k < end; k++){
+					if (left < middle && (right >= end || Double.compare(keys[sorted[left]], keys[sorted[right]]) <= 0))
+						buffer[k] = sorted[left++];
+					else
+						buffer[k] = sorted[right++];
+				}
+			}
+			int[] swap = sorted;
+			sorted = buffer;
+			buffer = swap;
+		}
+		return sorted;
+	}
+
 	public void performFastNonDominationSort(ArrayList<Integer> dominationFront, int[] dominationCounts, Object[] dominatedIndividuals, boolean aggregateRepulsors){
+		calculateRepulsorDistances();
 		// for each individual find the dominated individuals and count the times itself has been dominated
 		for(int i = 0; i < individuals.size(); i++){
 
@@ -482,8 +1028,8 @@ public class Population implements Serializable {
 			for(int j = 0; j < individuals.size(); j++){
 				if (i == j) continue; // no need to compare to oneself
 				// determine domination of i over j, or vice versa based on fitness and all repulsor distances
-				boolean iDominatesJ = this.dominates(individuals.get(i), individuals.get(j), aggregateRepulsors);
-				boolean jDominatesI = this.dominates(individuals.get(j), individuals.get(i), aggregateRepulsors);
+				boolean iDominatesJ = this.dominates(i, j, aggregateRepulsors);
+				boolean jDominatesI = this.dominates(j, i, aggregateRepulsors);
 				if (iDominatesJ && jDominatesI)
 					System.exit(-1);
 				// update datastructures
@@ -501,6 +1047,209 @@ public class Population implements Serializable {
 		}
 	}
 
+	// fills the objective arrays used by dominates(int, int, boolean) for the current individuals and repulsors
+	public void calculateRepulsorDistances(){
+		int numberOfIndividuals = individuals.size();
+		int numberOfRepulsors = repulsors.size();
+		repulsorDistances = new double[numberOfIndividuals * numberOfRepulsors];
+		averageRepulsorDistances = new double[numberOfIndividuals];
+		isRepulsor = new boolean[numberOfIndividuals];
+		// combined distances need complete training outputs, evaluations cut short are completed here (before reading
+		// the training error and before the distances might be calculated concurrently)
+		if (!Population.repulseWithValidationOnly){
+			for (int i = 0; i < numberOfIndividuals; i++)
+				individuals.get(i).completeTrainingEvaluation();
+			for (int r = 0; r < numberOfRepulsors; r++)
+				repulsors.get(r).completeTrainingEvaluation();
+		}
+		trainingErrors = getColumn(Objective.TRAINING);
+		final SemanticSketch sketch = Individual.getSemanticSketch();
+		if (sketch != null && numberOfRepulsors > 0){
+			estimateRepulsorDistances(sketch);
+		} else if (sortPool == null){
+			calculateRepulsorDistances(0, numberOfIndividuals);
+		} else {
+			sortPool.invoke(new BlockTask(new Block() {
+				public void compute(int start, int end) {
+					calculateRepulsorDistances(start, end);
+				}
+			}, 0, numberOfIndividuals));
+		}
+	}
+
+	// repulsor distances from the sketches of the semantics: all distances are estimated, then for every repulsor the
+	// individuals are ordered by their estimates and calculated exactly where the error bounds of neighbours overlap
+	// (or the estimate is 0), and every individual whose bounds of the average distance overlap those of another one
+	// is calculated exactly on all repulsors. Individuals are only compared on estimates that differ by more than the
+	// error bound, so the ranks equal the exact ones unless an estimate falls outside its bound, which is not rare (see
+	// SemanticSketch): with sketch_dimensions > 0 the ranks are approximate in every generation. The share of distances
+	// calculated exactly is logged to monitor the approximation.
+	protected void estimateRepulsorDistances(final SemanticSketch sketch){
+		final int numberOfIndividuals = individuals.size();
+		final int numberOfRepulsors = repulsors.size();
+		// the sketches are calculated once per outputs, before they might be read concurrently
+		for (int i = 0; i < numberOfIndividuals; i++)
+			prepareSketch(individuals.get(i));
+		for (int r = 0; r < numberOfRepulsors; r++)
+			prepareSketch(repulsors.get(r));
+		final double[] estimates = new double[numberOfIndividuals * numberOfRepulsors];
+		final boolean[] exact = new boolean[numberOfIndividuals * numberOfRepulsors];
+		invokeBlocks(new Block() {
+			public void compute(int start, int end) {
+				for (int i = start; i < end; i++){
+					Individual individual = individuals.get(i);
+					for (int r = 0; r < numberOfRepulsors; r++){
+						Individual repulsor = repulsors.get(r);
+						double estimate;
+						if (Population.repulseWithValidationOnly)
+							estimate = sketch.estimateSquaredValidationDistance(individual, repulsor);
+						else
+							estimate = sketch.estimateSquaredCombinedDistance(individual, repulsor);
+						estimates[i * numberOfRepulsors + r] = estimate;
+						repulsorDistances[i * numberOfRepulsors + r] = toRepulsorDistance(estimate, individual, repulsor);
+					}
+				}
+			}
+		}, numberOfIndividuals);
+		invokeBlocks(new Block() {
+			public void compute(int start, int end) {
+				double[] column = new double[numberOfIndividuals];
+				int[] indices = new int[numberOfIndividuals];
+				for (int i = 0; i < numberOfIndividuals; i++)
+					indices[i] = i;
+				for (int r = start; r < end; r++){
+					for (int i = 0; i < numberOfIndividuals; i++)
+						column[i] = estimates[i * numberOfRepulsors + r];
+					int[] sorted = sortIndices(indices, numberOfIndividuals, column);
+					for (int k = 0; k < numberOfIndividuals; k++){
+						double estimate = column[sorted[k]];
+						// both bounds grow with the estimate, only the neighbours in this order can overlap
+						boolean closeCall = Double.isNaN(estimate) || estimate == 0
+								|| (k > 0 && sketch.getUpperBound(column[sorted[k - 1]]) >= sketch.getLowerBound(estimate))
+								|| (k < numberOfIndividuals - 1 && sketch.getUpperBound(estimate) >= sketch.getLowerBound(column[sorted[k + 1]]));
+						if (closeCall){
+							repulsorDistances[sorted[k] * numberOfRepulsors + r] = calculateRepulsorDistance(individuals.get(sorted[k]), repulsors.get(r));
+							exact[sorted[k] * numberOfRepulsors + r] = true;
+						}
+					}
+				}
+			}
+		}, numberOfRepulsors);
+		// bounds of the averages, the sums of the bounds of the distances that are not exact
+		double[] lowerAverages = new double[numberOfIndividuals];
+		final double[] upperAverages = new double[numberOfIndividuals];
+		for (int i = 0; i < numberOfIndividuals; i++){
+			Individual individual = individuals.get(i);
+			double lower = 0;
+			double upper = 0;
+			for (int r = 0; r < numberOfRepulsors; r++){
+				int k = i * numberOfRepulsors + r;
+				if (exact[k]){
+					lower += repulsorDistances[k];
+					upper += repulsorDistances[k];
+				} else {
+					lower += toRepulsorDistance(sketch.getLowerBound(estimates[k]), individual, repulsors.get(r));
+					upper += toRepulsorDistance(sketch.getUpperBound(estimates[k]), individual, repulsors.get(r));
+				}
+			}
+			lowerAverages[i] = lower/numberOfRepulsors;
+			upperAverages[i] = upper/numberOfRepulsors;
+		}
+		// in the order of the lower bounds, a bound overlaps an earlier one if it starts before the largest upper bound
+		// so far and a later one if it ends after the next lower bound; the exact average lies within the former bounds,
+		// so calculating the overlapping ones exactly can't make others overlap
+		int[] indices = new int[numberOfIndividuals];
+		for (int i = 0; i < numberOfIndividuals; i++)
+			indices[i] = i;
+		int[] sorted = sortIndices(indices, numberOfIndividuals, lowerAverages);
+		final int[] closeCalls = new int[numberOfIndividuals];
+		int numberOfCloseCalls = 0;
+		double maximumUpper = Double.NEGATIVE_INFINITY;
+		for (int k = 0; k < numberOfIndividuals; k++){
+			int i = sorted[k];
+			boolean closeCall = Double.isNaN(lowerAverages[i]) || Double.isNaN(upperAverages[i])
+					|| lowerAverages[i] <= maximumUpper
+					|| (k < numberOfIndividuals - 1 && !(upperAverages[i] < lowerAverages[sorted[k + 1]]));
+			if (closeCall)
+				closeCalls[numberOfCloseCalls++] = i;
+			if (!(upperAverages[i] <= maximumUpper))
+				maximumUpper = upperAverages[i];
+		}
+		invokeBlocks(new Block() {
+			public void compute(int start, int end) {
+				for (int c = start; c < end; c++){
+					int i = closeCalls[c];
+					for (int r = 0; r < numberOfRepulsors; r++){
+						if (!exact[i * numberOfRepulsors + r]){
+							repulsorDistances[i * numberOfRepulsors + r] = calculateRepulsorDistance(individuals.get(i), repulsors.get(r));
+							exact[i * numberOfRepulsors + r] = true;
+						}
+					}
+				}
+			}
+		}, numberOfCloseCalls);
+		int numberOfExactDistances = 0;
+		for (int i = 0; i < numberOfIndividuals; i++){
+			double sum = 0;
+			for (int r = 0; r < numberOfRepulsors; r++){
+				double d = repulsorDistances[i * numberOfRepulsors + r];
+				sum += d;
+				if (d == 0)
+					isRepulsor[i] = true;
+				if (exact[i * numberOfRepulsors + r])
+					numberOfExactDistances++;
+			}
+			averageRepulsorDistances[i] = sum/numberOfRepulsors;
+		}
+		Utils.log(Utils.LogTag.LOG, "\tRepulsor distances calculated exactly (semantic sketch): " + numberOfExactDistances
+				+ " of " + estimates.length + " (" + numberOfCloseCalls + " individuals with overlapping average distances)");
+	}
+
+	// the repulsor distance derived from a squared euclidean distance of the semantics
+	protected static double toRepulsorDistance(double squaredDistance, Individual individual, Individual repulsor){
+		if (Population.repulseWithValidationOnly)
+			return SemanticSketch.toValidationDistance(squaredDistance, individual.getValidationDataOutputs().length);
+		return SemanticSketch.toCombinedDistance(squaredDistance, repulsor.getTrainingDataOutputs().length,
+				repulsor.getValidationDataOutputs().length);
+	}
+
+	protected static void prepareSketch(Individual individual){
+		individual.getValidationSketch();
+		if (!Population.repulseWithValidationOnly)
+			individual.getTrainingSketch();
+	}
+
+	// runs the block on [0, end[, split over the sort pool if there is one
+	protected static void invokeBlocks(Block block, int end){
+		if (sortPool == null){
+			block.compute(0, end);
+		} else {
+			sortPool.invoke(new BlockTask(block, 0, end));
+		}
+	}
+
+	protected static double calculateRepulsorDistance(Individual individual, Individual repulsor){
+		if (Population.repulseWithValidationOnly)
+			return individual.calculateValidationSemanticDistance(repulsor.getValidationDataOutputs());
+		return individual.calculateCombinedSemanticDistance(repulsor.getTrainingDataOutputs(), repulsor.getValidationDataOutputs());
+	}
+
+	protected void calculateRepulsorDistances(int start, int end){
+		int numberOfRepulsors = repulsors.size();
+		for (int i = start; i < end; i++){
+			Individual individual = individuals.get(i);
+			double sum = 0;
+			for (int r = 0; r < numberOfRepulsors; r++){
+				double d = calculateRepulsorDistance(individual, repulsors.get(r));
+				repulsorDistances[i * numberOfRepulsors + r] = d;
+				sum += d;
+				if (d == 0)
+					isRepulsor[i] = true;
+			}
+			averageRepulsorDistances[i] = sum/numberOfRepulsors;
+		}
+	}
+
 	public ArrayList<Integer> extractNextFront(int front, ArrayList<Integer> dominationFront, int[] dominationCounts, Object[] dominatedIndividuals){
 		ArrayList<Integer> nextFront = new ArrayList<Integer>();
 		for (int i = 0; i < dominationFront.size(); i++){
@@ -521,6 +1270,27 @@ public class Population implements Serializable {
 		return nextFront;
 	}
 
+	// same as dominates(Individual, Individual, boolean) for the individuals at index i and j, reading the objectives
+	// calculated by calculateRepulsorDistances()
+	public boolean dominates(int i, int j, boolean aggregateRepulsors){
+		// force domination if repulsor
+		if (isRepulsor[i])
+			return false;
+		if (isRepulsor[j])
+			return true;
+		if (aggregateRepulsors)
+			return trainingErrors[i] < trainingErrors[j] && averageRepulsorDistances[i] > averageRepulsorDistances[j];
+		int numberOfRepulsors = repulsors.size();
+		// excluding the fitness only takes effect if there is at least one repulsor
+		boolean iDominatesJ = (Population.dominationExcludeFitness && numberOfRepulsors > 0) || trainingErrors[i] < trainingErrors[j];
+		int offsetI = i * numberOfRepulsors;
+		int offsetJ = j * numberOfRepulsors;
+		for (int r = 0; r < numberOfRepulsors && iDominatesJ; r++){
+			iDominatesJ = repulsorDistances[offsetI + r] > repulsorDistances[offsetJ + r];
+		}
+		return iDominatesJ;
+	}
+
 	public boolean dominates(Individual i, Individual j, boolean aggregateRepulsors){
 		// determine domination of i over j, or vice versa based on fitness and all repulsor distances
 		boolean iDominatesJ = (i.getTrainingError() < j.getTrainingError());
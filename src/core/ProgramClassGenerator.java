@@ -0,0 +1,257 @@
+package core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+// writes the class file of a CompiledEvaluator whose eval method is the straight line bytecode of one program
+public class ProgramClassGenerator {
+
+	protected static final String CLASS_NAME = "core/GeneratedProgram";
+	// HotSpot does not compile methods with more than 8000 bytes of bytecode (DontCompileHugeMethods)
+	protected static final int MAXIMUM_CODE_LENGTH = 8000;
+
+	// constant pool tags
+	protected static final int UTF8 = 1;
+	protected static final int DOUBLE = 6;
+	protected static final int CLASS = 7;
+	protected static final int METHODREF = 10;
+	protected static final int NAME_AND_TYPE = 12;
+
+	// opcodes
+	protected static final int ALOAD_0 = 0x2a;
+	protected static final int ALOAD_1 = 0x2b;
+	protected static final int BIPUSH = 0x10;
+	protected static final int SIPUSH = 0x11;
+	protected static final int LDC2_W = 0x14;
+	protected static final int DALOAD = 0x31;
+	protected static final int DADD = 0x63;
+	protected static final int DSUB = 0x67;
+	protected static final int DMUL = 0x6b;
+	protected static final int DRETURN = 0xaf;
+	protected static final int RETURN = 0xb1;
+	protected static final int INVOKESPECIAL = 0xb7;
+	protected static final int INVOKESTATIC = 0xb8;
+
+	protected ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+	protected DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+	protected int constantPoolCount = 1;
+	protected HashMap<String, Integer> constantIndexes = new HashMap<String, Integer>();
+
+	protected ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+	protected DataOutputStream code = new DataOutputStream(codeBytes);
+	protected int stackSize, maximumStackSize;
+
+	protected CompiledProgram program;
+
+	protected ProgramClassGenerator(CompiledProgram program) {
+		this.program = program;
+	}
+
+	// returns null if the program cannot be turned into a single method (generic operators or too much code)
+	public static byte[] generate(CompiledProgram program) {
+		// every program element emits at least one byte of code
+		if (program.getLength() > MAXIMUM_CODE_LENGTH) {
+			return null;
+		}
+		for (int k = 0; k < program.getLength(); k++) {
+			if (program.getOpcode(k) == CompiledProgram.GENERIC_OPERATOR) {
+				return null;
+			}
+		}
+		try {
+			return new ProgramClassGenerator(program).generateClass();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	protected byte[] generateClass() throws IOException {
+		int thisClass = classConstant(CLASS_NAME);
+		int superClass = classConstant("java/lang/Object");
+		int evaluatorInterface = classConstant("core/CompiledEvaluator");
+		int objectConstructor = methodConstant("java/lang/Object", "<init>", "()V");
+		int constructorName = utf8Constant("<init>");
+		int constructorDescriptor = utf8Constant("()V");
+		int evalName = utf8Constant("eval");
+		int evalDescriptor = utf8Constant("([D)D");
+		int codeAttribute = utf8Constant("Code");
+
+		emitNode(0);
+		code.writeByte(DRETURN);
+		if (codeBytes.size() > MAXIMUM_CODE_LENGTH || constantPoolCount > 65535) {
+			return null;
+		}
+
+		ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(classBytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(52);
+		out.writeShort(constantPoolCount);
+		constantPool.flush();
+		out.write(constantPoolBytes.toByteArray());
+		out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);
+		out.writeShort(evaluatorInterface);
+		out.writeShort(0); // fields
+		out.writeShort(2); // methods
+
+		// public <init>() { super(); }
+		out.writeShort(0x0001);
+		out.writeShort(constructorName);
+		out.writeShort(constructorDescriptor);
+		out.writeShort(1);
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + 5);
+		out.writeShort(1); // max stack
+		out.writeShort(1); // max locals
+		out.writeInt(5);
+		out.writeByte(ALOAD_0);
+		out.writeByte(INVOKESPECIAL);
+		out.writeShort(objectConstructor);
+		out.writeByte(RETURN);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // attributes
+
+		// public double eval(double[] row)
+		code.flush();
+		byte[] evalCode = codeBytes.toByteArray();
+		out.writeShort(0x0001);
+		out.writeShort(evalName);
+		out.writeShort(evalDescriptor);
+		out.writeShort(1);
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + evalCode.length);
+		out.writeShort(maximumStackSize);
+		out.writeShort(2);
+		out.writeInt(evalCode.length);
+		out.write(evalCode);
+		out.writeShort(0);
+		out.writeShort(0);
+
+		out.writeShort(0); // class attributes
+		out.flush();
+		return classBytes.toByteArray();
+	}
+
+	// emits the subtree starting at the given prefix position and returns the position following it
+	protected int emitNode(int position) throws IOException {
+		int k = program.getLength() - 1 - position;
+		switch (program.getOpcode(k)) {
+			case CompiledProgram.CONSTANT:
+				code.writeByte(LDC2_W);
+				code.writeShort(doubleConstant(program.getConstant(k)));
+				push(2);
+				return position + 1;
+			case CompiledProgram.VARIABLE:
+				code.writeByte(ALOAD_1);
+				int variable = program.getOperand(k);
+				if (variable < 128) {
+					code.writeByte(BIPUSH);
+					code.writeByte(variable);
+				} else {
+					code.writeByte(SIPUSH);
+					code.writeShort(variable);
+				}
+				push(2);
+				code.writeByte(DALOAD);
+				return position + 1;
+			case CompiledProgram.LOGISTIC_FUNCTION:
+				position = emitNode(position + 1);
+				code.writeByte(INVOKESTATIC);
+				code.writeShort(methodConstant("utils/Utils", "logisticFunction", "(D)D"));
+				return position;
+			case CompiledProgram.SINE:
+				position = emitNode(position + 1);
+				code.writeByte(INVOKESTATIC);
+				code.writeShort(methodConstant("java/lang/Math", "sin", "(D)D"));
+				return position;
+		}
+		int opcode = program.getOpcode(k);
+		position = emitNode(position + 1);
+		position = emitNode(position);
+		switch (opcode) {
+			case CompiledProgram.ADDITION:
+				code.writeByte(DADD);
+				break;
+			case CompiledProgram.SUBTRACTION:
+				code.writeByte(DSUB);
+				break;
+			case CompiledProgram.MULTIPLICATION:
+				code.writeByte(DMUL);
+				break;
+			case CompiledProgram.PROTECTED_DIVISION:
+				code.writeByte(INVOKESTATIC);
+				code.writeShort(methodConstant("core/JitCompiler", "protectedDivision", "(DD)D"));
+				break;
+		}
+		stackSize -= 2;
+		return position;
+	}
+
+	protected void push(int slots) {
+		stackSize += slots;
+		maximumStackSize = Math.max(maximumStackSize, stackSize);
+	}
+
+	protected int utf8Constant(String value) throws IOException {
+		Integer index = constantIndexes.get("U" + value);
+		if (index == null) {
+			constantPool.writeByte(UTF8);
+			constantPool.writeUTF(value);
+			index = constantPoolCount++;
+			constantIndexes.put("U" + value, index);
+		}
+		return index;
+	}
+
+	protected int classConstant(String name) throws IOException {
+		Integer index = constantIndexes.get("C" + name);
+		if (index == null) {
+			int nameIndex = utf8Constant(name);
+			constantPool.writeByte(CLASS);
+			constantPool.writeShort(nameIndex);
+			index = constantPoolCount++;
+			constantIndexes.put("C" + name, index);
+		}
+		return index;
+	}
+
+	protected int methodConstant(String owner, String name, String descriptor) throws IOException {
+		String key = "M" + owner + "." + name + descriptor;
+		Integer index = constantIndexes.get(key);
+		if (index == null) {
+			int ownerIndex = classConstant(owner);
+			int nameIndex = utf8Constant(name);
+			int descriptorIndex = utf8Constant(descriptor);
+			constantPool.writeByte(NAME_AND_TYPE);
+			constantPool.writeShort(nameIndex);
+			constantPool.writeShort(descriptorIndex);
+			int nameAndType = constantPoolCount++;
+			constantPool.writeByte(METHODREF);
+			constantPool.writeShort(ownerIndex);
+			constantPool.writeShort(nameAndType);
+			index = constantPoolCount++;
+			constantIndexes.put(key, index);
+		}
+		return index;
+	}
+
+	protected int doubleConstant(double value) throws IOException {
+		String key = "D" + Double.doubleToRawLongBits(value);
+		Integer index = constantIndexes.get(key);
+		if (index == null) {
+			constantPool.writeByte(DOUBLE);
+			constantPool.writeDouble(value);
+			index = constantPoolCount;
+			// doubles take two constant pool entries
+			constantPoolCount += 2;
+			constantIndexes.put(key, index);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,191 @@
+package core;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.WeakHashMap;
+
+import programElements.Constant;
+import programElements.InputVariable;
+import programElements.Operator;
+import programElements.ProgramElement;
+
+// immutable program tree node, structurally identical nodes are shared (hash consing) so programs form a DAG
+public class ProgramNode {
+
+	protected static WeakHashMap<ProgramNode, WeakReference<ProgramNode>> nodes = new WeakHashMap<ProgramNode, WeakReference<ProgramNode>>();
+
+	protected ProgramElement element;
+	protected ProgramNode[] children;
+	// size and depth of the (unshared) tree the node represents, sizes saturate at Long.MAX_VALUE
+	protected long size;
+	protected int depth;
+	protected int hash;
+
+	protected ProgramNode(ProgramElement element, ProgramNode[] children) {
+		this.element = element;
+		this.children = children;
+		size = 1;
+		for (ProgramNode child : children) {
+			size = addSizes(size, child.size);
+			depth = Math.max(depth, child.depth + 1);
+		}
+		// children are canonical, so their identity hash codes identify their structure
+		hash = element.hashCode() * 31 + element.getClass().getName().hashCode();
+		for (ProgramNode child : children) {
+			hash = hash * 31 + System.identityHashCode(child);
+		}
+	}
+
+	// returns the canonical node of the element applied to the given (canonical) children
+	public static synchronized ProgramNode create(ProgramElement element, ProgramNode... children) {
+		ProgramNode node = new ProgramNode(element, children);
+		WeakReference<ProgramNode> reference = nodes.get(node);
+		ProgramNode canonical = reference == null ? null : reference.get();
+		if (canonical == null) {
+			nodes.put(node, new WeakReference<ProgramNode>(node));
+			canonical = node;
+		}
+		return canonical;
+	}
+
+	// converts a prefix program into nodes
+	public static ProgramNode fromProgram(List<ProgramElement> program) {
+		ArrayDeque<ProgramNode> stack = new ArrayDeque<ProgramNode>();
+		for (int position = program.size() - 1; position >= 0; position--) {
+			ProgramElement element = program.get(position);
+			int arity = element instanceof Operator ? ((Operator) element).getArity() : 0;
+			// the first argument is on top of the stack
+			ProgramNode[] children = new ProgramNode[arity];
+			for (int a = 0; a < arity; a++) {
+				children[a] = stack.pop();
+			}
+			stack.push(create(element, children));
+		}
+		return stack.pop();
+	}
+
+	public static long addSizes(long size, long otherSize) {
+		long sum = size + otherSize;
+		return sum < 0 ? Long.MAX_VALUE : sum;
+	}
+
+	public int hashCode() {
+		return hash;
+	}
+
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof ProgramNode)) {
+			return false;
+		}
+		ProgramNode node = (ProgramNode) other;
+		if (hash != node.hash || !element.equals(node.element) || children.length != node.children.length) {
+			return false;
+		}
+		for (int i = 0; i < children.length; i++) {
+			if (children[i] != node.children[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// evaluates every distinct node once, outputs of shared nodes are kept in the cache across evaluations
+	public double[] evaluate(Data data, int split, SemanticsCache cache) {
+		if (cache != null) {
+			cache.validate(data);
+		}
+		double[][] columns = data.getColumns(split);
+		int rows = columns.length == 0 ? 0 : columns[0].length;
+		// outputs of this evaluation, evicted cache entries can not get lost halfway through
+		IdentityHashMap<ProgramNode, double[]> outputs = new IdentityHashMap<ProgramNode, double[]>();
+		ArrayDeque<ProgramNode> stack = new ArrayDeque<ProgramNode>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			ProgramNode node = stack.peek();
+			if (outputs.containsKey(node)) {
+				stack.pop();
+				continue;
+			}
+			if (node.element instanceof InputVariable) {
+				outputs.put(node, columns[((InputVariable) node.element).getVariableIndex()]);
+				stack.pop();
+				continue;
+			}
+			if (node.element instanceof Constant) {
+				double[] constant = new double[rows];
+				Arrays.fill(constant, ((Constant) node.element).getValue());
+				outputs.put(node, constant);
+				stack.pop();
+				continue;
+			}
+			double[] cached = cache == null ? null : cache.get(node, split);
+			if (cached != null) {
+				outputs.put(node, cached);
+				stack.pop();
+				continue;
+			}
+			// evaluate the children first
+			boolean childrenEvaluated = true;
+			for (ProgramNode child : node.children) {
+				if (!outputs.containsKey(child)) {
+					stack.push(child);
+					childrenEvaluated = false;
+				}
+			}
+			if (!childrenEvaluated) {
+				continue;
+			}
+			double[][] arguments = new double[node.children.length][];
+			for (int a = 0; a < arguments.length; a++) {
+				arguments[a] = outputs.get(node.children[a]);
+			}
+			double[] result = new double[rows];
+			((Operator) node.element).performArrayOperation(arguments, result, rows);
+			outputs.put(node, result);
+			if (cache != null) {
+				cache.put(node, split, result);
+			}
+			stack.pop();
+		}
+		// never hand out a data column or a cached array as the outputs of an individual
+		return outputs.get(this).clone();
+	}
+
+	// expands the node into a prefix program, the result has getSize() elements
+	public ArrayList<ProgramElement> toProgram() {
+		ArrayList<ProgramElement> program = new ArrayList<ProgramElement>();
+		ArrayDeque<ProgramNode> stack = new ArrayDeque<ProgramNode>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			ProgramNode node = stack.pop();
+			program.add(node.element);
+			for (int a = node.children.length - 1; a >= 0; a--) {
+				stack.push(node.children[a]);
+			}
+		}
+		return program;
+	}
+
+	public ProgramElement getElement() {
+		return element;
+	}
+
+	public ProgramNode getChild(int index) {
+		return children[index];
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+}
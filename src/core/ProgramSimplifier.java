@@ -0,0 +1,146 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import programElements.Addition;
+import programElements.Constant;
+import programElements.Multiplication;
+import programElements.Operator;
+import programElements.ProgramElement;
+import programElements.ProtectedDivision;
+import programElements.Subtraction;
+
+// removes dead weight from prefix programs without changing their outputs
+public class ProgramSimplifier {
+
+	// x - x and 0 * x are replaced by 0, which only differs from the original if x evaluates to NaN or infinity
+	// (possible through overflow, protected division keeps all other operations finite)
+	protected boolean foldIdentities = true;
+
+	protected long inputElements, outputElements;
+
+	public ProgramSimplifier() {
+	}
+
+	public ProgramSimplifier(boolean foldIdentities) {
+		this.foldIdentities = foldIdentities;
+	}
+
+	// returns the simplified copy of the program, or the program itself if nothing could be simplified
+	public List<ProgramElement> simplify(List<ProgramElement> program) {
+		ArrayList<ProgramElement> simplified = new ArrayList<ProgramElement>(program.size());
+		simplifySubtree(program, 0, simplified);
+		inputElements += program.size();
+		outputElements += simplified.size();
+		return simplified.size() == program.size() ? program : simplified;
+	}
+
+	// appends the simplified subtree starting at the given position and returns the position following it
+	protected int simplifySubtree(List<ProgramElement> program, int position, ArrayList<ProgramElement> out) {
+		ProgramElement element = program.get(position);
+		if (!(element instanceof Operator)) {
+			out.add(element);
+			return position + 1;
+		}
+		Operator operator = (Operator) element;
+		int start = out.size();
+		out.add(operator);
+		int[] argumentStarts = new int[operator.getArity() + 1];
+		boolean constantArguments = true;
+		position++;
+		for (int a = 0; a < operator.getArity(); a++) {
+			argumentStarts[a] = out.size();
+			position = simplifySubtree(program, position, out);
+			constantArguments &= out.get(argumentStarts[a]) instanceof Constant;
+		}
+		argumentStarts[operator.getArity()] = out.size();
+
+		// constant folding uses the operator itself, so the folded value is exactly the evaluated one
+		if (constantArguments) {
+			double[] arguments = new double[operator.getArity()];
+			for (int a = 0; a < arguments.length; a++) {
+				arguments[a] = ((Constant) out.get(argumentStarts[a])).getValue();
+			}
+			replace(out, start, new Constant(operator.performOperation(arguments)));
+			return position;
+		}
+		if (operator.getArity() != 2) {
+			return position;
+		}
+		ProgramElement first = out.get(argumentStarts[0]);
+		ProgramElement second = out.get(argumentStarts[1]);
+		if (operator instanceof Addition) {
+			if (isConstant(first, 0)) {
+				keepArgument(out, start, argumentStarts, 1);
+			} else if (isConstant(second, 0)) {
+				keepArgument(out, start, argumentStarts, 0);
+			}
+		} else if (operator instanceof Subtraction) {
+			if (isConstant(second, 0)) {
+				keepArgument(out, start, argumentStarts, 0);
+			} else if (foldIdentities && equalArguments(out, argumentStarts)) {
+				replace(out, start, new Constant(0.0));
+			}
+		} else if (operator instanceof Multiplication) {
+			if (foldIdentities && (isConstant(first, 0) || isConstant(second, 0))) {
+				replace(out, start, new Constant(0.0));
+			} else if (isConstant(first, 1)) {
+				keepArgument(out, start, argumentStarts, 1);
+			} else if (isConstant(second, 1)) {
+				keepArgument(out, start, argumentStarts, 0);
+			}
+		} else if (operator instanceof ProtectedDivision) {
+			// dividing by 1 or by a constant too small to divide by both return the numerator
+			if (second instanceof Constant && (((Constant) second).getValue() == 1
+					|| Math.abs(((Constant) second).getValue()) < ProtectedDivision.MINIMUM_DENOMINATOR_VALUE)) {
+				keepArgument(out, start, argumentStarts, 0);
+			}
+		}
+		return position;
+	}
+
+	protected static boolean isConstant(ProgramElement element, double value) {
+		return element instanceof Constant && ((Constant) element).getValue() == value;
+	}
+
+	protected static boolean equalArguments(ArrayList<ProgramElement> out, int[] argumentStarts) {
+		int length = argumentStarts[1] - argumentStarts[0];
+		if (length != argumentStarts[2] - argumentStarts[1]) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (!out.get(argumentStarts[0] + i).equals(out.get(argumentStarts[1] + i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// replaces the subtree at start (which reaches to the end of out) by a single element
+	protected static void replace(ArrayList<ProgramElement> out, int start, ProgramElement element) {
+		out.subList(start + 1, out.size()).clear();
+		out.set(start, element);
+	}
+
+	// replaces the subtree at start by one of its (already simplified) arguments
+	protected static void keepArgument(ArrayList<ProgramElement> out, int start, int[] argumentStarts, int argument) {
+		ArrayList<ProgramElement> kept = new ArrayList<ProgramElement>(
+				out.subList(argumentStarts[argument], argumentStarts[argument + 1]));
+		out.subList(start, out.size()).clear();
+		out.addAll(kept);
+	}
+
+	public long getInputElements() {
+		return inputElements;
+	}
+
+	public long getOutputElements() {
+		return outputElements;
+	}
+
+	public void resetStatistics() {
+		inputElements = 0;
+		outputElements = 0;
+	}
+}
@@ -0,0 +1,131 @@
+package core;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// pre-generated random trees (and their outputs), the next pool is built in the background during a generation
+public class RandomTreePool {
+
+	protected static class Pool {
+		protected Individual[] trees;
+		// outputs of all trees per data split, tree t occupies [t * rows, (t + 1) * rows[
+		protected double[][] semantics = new double[3][];
+		protected int[] rows = new int[3];
+		protected Data data;
+		protected long dataModificationCount;
+	}
+
+	protected GpRun run;
+	protected int size;
+	protected int maximumDepth;
+	protected boolean evaluateTrees;
+	// the background thread must not share the random generator of the run
+	protected Random random;
+
+	protected ExecutorService executor;
+	protected Future<Pool> next;
+	protected Pool current;
+
+	public RandomTreePool(GpRun run, int size, int maximumDepth, boolean evaluateTrees, long seed) {
+		this.run = run;
+		this.size = size;
+		this.maximumDepth = maximumDepth;
+		this.evaluateTrees = evaluateTrees;
+		this.random = new Random(seed);
+	}
+
+	// called once per generation: takes over the pool built in the background and starts building the next one
+	public void refresh(Data data) {
+		Pool pool = null;
+		if (next != null) {
+			try {
+				pool = next.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				pool = null;
+			}
+		}
+		// a pool evaluated on data that changed in the meantime can not be used
+		if (pool == null || pool.data != data || pool.dataModificationCount != data.getModificationCount()) {
+			pool = fill(data, data.getModificationCount());
+		}
+		current = pool;
+		if (executor == null || executor.isShutdown()) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "random-tree-pool");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		final Data poolData = data;
+		final long modificationCount = data.getModificationCount();
+		next = executor.submit(new Callable<Pool>() {
+			public Pool call() {
+				return fill(poolData, modificationCount);
+			}
+		});
+	}
+
+	public void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		next = null;
+	}
+
+	// only uses thread safe parts of the run and the individuals (no shared evaluators or caches)
+	protected Pool fill(Data data, long modificationCount) {
+		Pool pool = new Pool();
+		pool.data = data;
+		pool.dataModificationCount = modificationCount;
+		pool.trees = new Individual[size];
+		CompiledProgram[] programs = new CompiledProgram[size];
+		for (int t = 0; t < size; t++) {
+			pool.trees[t] = run.grow(maximumDepth, random);
+			programs[t] = CompiledProgram.compile(pool.trees[t].getProgram());
+		}
+		if (evaluateTrees) {
+			for (int split = Data.TRAINING; split <= Data.UNSEEN; split++) {
+				double[][] splitData = data.getData(split);
+				if (splitData == null) {
+					continue;
+				}
+				int rows = splitData.length;
+				pool.rows[split] = rows;
+				pool.semantics[split] = new double[size * rows];
+				for (int t = 0; t < size; t++) {
+					System.arraycopy(programs[t].evaluate(splitData), 0, pool.semantics[split], t * rows, rows);
+				}
+			}
+		}
+		return pool;
+	}
+
+	public int draw(Random random) {
+		return random.nextInt(size);
+	}
+
+	public Individual getTree(int index) {
+		return current.trees[index];
+	}
+
+	public double[] getSemantics(int split) {
+		return current.semantics[split];
+	}
+
+	public int getOffset(int index, int split) {
+		return index * current.rows[split];
+	}
+
+	public int getSize() {
+		return size;
+	}
+}
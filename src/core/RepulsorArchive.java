@@ -0,0 +1,556 @@
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+// the repulsors of a run in the order they were added, indexed for the queries of Population and GpRun:
+// a hash of the training semantics finds equal repulsors, and a vantage point tree on the combined training and
+// validation semantics answers nearest neighbour, range and closest pair queries without comparing every repulsor.
+// The tree prunes with the euclidean distance, the distances that are compared are still calculated by
+// Individual.calculateCombinedSemanticDistance (which only grows with the euclidean distance), so every query returns
+// what a scan over all repulsors returns. Repulsors whose outputs change (re-evaluated or merged) have to be re-indexed
+// with update or updateAll, the tree is rebuilt once it grew to twice its size or most of it was removed.
+// With a semantic sketch (Individual.setSemanticSketch) the queries scan the sketches instead of the tree and only
+// calculate the distances exactly that the error bound of the sketch can not rule out. Every repulsor a query returns
+// is confirmed with its exact distance, but the bounds of the sketch are not guaranteed (see SemanticSketch), so a
+// closer repulsor can be missed and the queries are approximate.
+public class RepulsorArchive implements Serializable {
+
+	private static final long serialVersionUID = 7L;
+
+	// entries in a leaf before it is split
+	protected static final int LEAF_SIZE = 8;
+	// relative error allowed for the euclidean distances the tree prunes with
+	protected static final double DISTANCE_TOLERANCE = 1e-8;
+
+	protected ArrayList<Individual> repulsors = new ArrayList<Individual>();
+
+	// the index is rebuilt after deserialization
+	protected transient ArrayList<Entry> entries;
+	protected transient HashMap<Integer, ArrayList<Entry>> trainingSemanticsIndex;
+	protected transient Node root;
+	protected transient long nextSequence;
+	protected transient int trainingLength;
+	protected transient int validationLength;
+	// entries the tree can not be used for (other lengths or values that are not finite), queries scan instead
+	protected transient int irregularEntries;
+	protected transient int removedEntries;
+	protected transient int sizeAtBuild;
+
+	// a repulsor with the outputs it was indexed with, the sequence gives the order of the repulsors
+	protected static class Entry implements Serializable {
+		private static final long serialVersionUID = 7L;
+
+		protected Individual individual;
+		protected double[] training;
+		protected double[] validation;
+		protected long sequence;
+		protected int hash;
+		protected boolean regular;
+		protected boolean removed;
+	}
+
+	// a leaf (entries != null) or a vantage point with the entries closer than radius inside and the others outside,
+	// together with the range of distances to the vantage point within both
+	protected static class Node implements Serializable {
+		private static final long serialVersionUID = 7L;
+
+		protected ArrayList<Entry> entries;
+		protected Entry vantagePoint;
+		protected double radius;
+		protected Node inside, outside;
+		protected double insideMinimum, insideMaximum, outsideMinimum, outsideMaximum;
+	}
+
+	// the best entry found so far by a nearest neighbour search
+	protected static class Result {
+		protected double distance;
+		protected Entry entry;
+		protected boolean acceptEqual;
+	}
+
+	public int size() {
+		return repulsors.size();
+	}
+
+	public Individual get(int index) {
+		return repulsors.get(index);
+	}
+
+	public void add(Individual repulsor) {
+		prepareIndex();
+		repulsors.add(repulsor);
+		Entry entry = createEntry(repulsor, nextSequence++);
+		entries.add(entry);
+		index(entry);
+		maintain();
+	}
+
+	public Individual remove(int index) {
+		prepareIndex();
+		unindex(entries.remove(index));
+		maintain();
+		return repulsors.remove(index);
+	}
+
+	// whether the training semantics of any repulsor equal the given ones
+	public boolean containsTrainingSemantics(double[] semantics) {
+		prepareIndex();
+		if (irregularEntries == 0 && semantics.length == trainingLength) {
+			ArrayList<Entry> candidates = trainingSemanticsIndex.get(hash(semantics));
+			if (candidates != null) {
+				for (Entry entry : candidates) {
+					if (isEqual(semantics, entry.training))
+						return true;
+				}
+			}
+			return false;
+		}
+		for (Entry entry : entries) {
+			if (isEqual(semantics, entry.training))
+				return true;
+		}
+		return false;
+	}
+
+	// whether the combined semantic distance of the individual to any repulsor is below the given distance
+	public boolean isAnyCloserThan(Individual individual, double distance) {
+		prepareIndex();
+		double[] training = individual.getTrainingDataOutputs();
+		double[] validation = individual.getValidationDataOutputs();
+		SemanticSketch sketch = Individual.getSemanticSketch();
+		if (sketch != null) {
+			for (Entry entry : entries) {
+				double estimate = sketch.estimateSquaredCombinedDistance(individual, entry.individual);
+				// the sketch only rules repulsors out, a repulsor within the distance is confirmed exactly
+				if (!(toCombinedDistance(sketch.getLowerBound(estimate), entry) >= distance)
+						&& individual.calculateCombinedSemanticDistance(entry.training, entry.validation) < distance)
+					return true;
+			}
+			return false;
+		}
+		if (!isIndexed(training, validation)) {
+			for (Entry entry : entries) {
+				if (individual.calculateCombinedSemanticDistance(entry.training, entry.validation) < distance)
+					return true;
+			}
+			return false;
+		}
+		return isAnyCloserThan(root, individual, training, validation, distance);
+	}
+
+	// the repulsor with the smallest combined semantic distance to the individual (the first one on ties), -1 if
+	// there are no repulsors
+	public int findNearest(Individual individual) {
+		prepareIndex();
+		double[] training = individual.getTrainingDataOutputs();
+		double[] validation = individual.getValidationDataOutputs();
+		Result result = new Result();
+		result.distance = Double.POSITIVE_INFINITY;
+		result.acceptEqual = true;
+		SemanticSketch sketch = Individual.getSemanticSketch();
+		if (sketch != null) {
+			// only repulsors that might be closer than the upper bound of any other are calculated exactly
+			double minimumUpperBound = Double.POSITIVE_INFINITY;
+			for (Entry entry : entries) {
+				double estimate = sketch.estimateSquaredCombinedDistance(individual, entry.individual);
+				minimumUpperBound = Math.min(minimumUpperBound, toCombinedDistance(sketch.getUpperBound(estimate), entry));
+			}
+			for (Entry entry : entries) {
+				double estimate = sketch.estimateSquaredCombinedDistance(individual, entry.individual);
+				if (!(toCombinedDistance(sketch.getLowerBound(estimate), entry) > minimumUpperBound))
+					offer(result, entry, individual.calculateCombinedSemanticDistance(entry.training, entry.validation));
+			}
+		} else if (!isIndexed(training, validation)) {
+			for (Entry entry : entries) {
+				offer(result, entry, individual.calculateCombinedSemanticDistance(entry.training, entry.validation));
+			}
+		} else {
+			findNearest(root, individual, training, validation, -1, result);
+		}
+		return result.entry == null ? -1 : indexOf(result.entry);
+	}
+
+	// the indices of the two repulsors with the smallest combined semantic distance (the first pair on ties, as
+	// calculated by the first of both), null if there are less than two repulsors
+	public int[] findClosestPair() {
+		prepareIndex();
+		if (entries.size() < 2)
+			return null;
+		Entry first = null;
+		Result best = new Result();
+		best.distance = Double.POSITIVE_INFINITY;
+		best.acceptEqual = true;
+		SemanticSketch sketch = Individual.getSemanticSketch();
+		boolean indexed = irregularEntries == 0 && sketch == null;
+		// with a sketch, only pairs that might be closer than the upper bound of any other are calculated exactly
+		double minimumUpperBound = Double.POSITIVE_INFINITY;
+		if (sketch != null) {
+			for (int r1 = 0; r1 < entries.size() - 1; r1++) {
+				for (int r2 = r1 + 1; r2 < entries.size(); r2++) {
+					double estimate = sketch.estimateSquaredCombinedDistance(entries.get(r1).individual, entries.get(r2).individual);
+					minimumUpperBound = Math.min(minimumUpperBound, toCombinedDistance(sketch.getUpperBound(estimate), entries.get(r2)));
+				}
+			}
+		}
+		for (int r1 = 0; r1 < entries.size() - 1; r1++) {
+			Entry entry = entries.get(r1);
+			// only pairs closer than the best so far, a pair of an earlier repulsor wins ties
+			Result result = new Result();
+			result.distance = best.distance;
+			result.acceptEqual = best.entry == null;
+			if (indexed) {
+				findNearest(root, entry.individual, entry.training, entry.validation, entry.sequence, result);
+			} else {
+				for (int r2 = r1 + 1; r2 < entries.size(); r2++) {
+					Entry other = entries.get(r2);
+					if (sketch != null && toCombinedDistance(sketch.getLowerBound(
+							sketch.estimateSquaredCombinedDistance(entry.individual, other.individual)), other) > minimumUpperBound)
+						continue;
+					offer(result, other, entry.individual.calculateCombinedSemanticDistance(other.training, other.validation));
+				}
+			}
+			if (result.entry != null) {
+				first = entry;
+				best.distance = result.distance;
+				best.entry = result.entry;
+			}
+		}
+		if (first == null)
+			return null;
+		return new int[] { indexOf(first), indexOf(best.entry) };
+	}
+
+	// the distance calculateCombinedSemanticDistance derives from a squared euclidean distance to the entry
+	protected static double toCombinedDistance(double squaredDistance, Entry entry) {
+		return SemanticSketch.toCombinedDistance(squaredDistance, entry.training.length, entry.validation.length);
+	}
+
+	protected boolean isIndexed(double[] training, double[] validation) {
+		return irregularEntries == 0 && training.length == trainingLength && validation != null
+				&& validation.length == validationLength && isFinite(training) && isFinite(validation);
+	}
+
+	protected boolean isAnyCloserThan(Node node, Individual individual, double[] training, double[] validation,
+			double distance) {
+		if (node == null)
+			return false;
+		if (node.entries != null) {
+			for (Entry entry : node.entries) {
+				if (isCloserThan(individual, training, validation, entry, distance))
+					return true;
+			}
+			return false;
+		}
+		double d = euclideanDistance(training, validation, node.vantagePoint);
+		if (!node.vantagePoint.removed && individual.calculateCombinedSemanticDistance(node.vantagePoint.training,
+				node.vantagePoint.validation) < distance)
+			return true;
+		// the closer side first, it more likely holds a repulsor within the distance
+		boolean insideFirst = d < node.radius;
+		for (int side = 0; side < 2; side++) {
+			boolean inside = insideFirst == (side == 0);
+			double minimum = inside ? getMinimumCombinedDistance(d, node.insideMinimum, node.insideMaximum)
+					: getMinimumCombinedDistance(d, node.outsideMinimum, node.outsideMaximum);
+			if (minimum < distance && isAnyCloserThan(inside ? node.inside : node.outside, individual, training, validation, distance))
+				return true;
+		}
+		return false;
+	}
+
+	protected boolean isCloserThan(Individual individual, double[] training, double[] validation, Entry entry,
+			double distance) {
+		if (entry.removed)
+			return false;
+		// the euclidean distance is cheaper to rule out than to calculate the exact distance
+		double d = euclideanDistance(training, validation, entry);
+		if (getCombinedDistanceBound(d, d) >= distance)
+			return false;
+		return individual.calculateCombinedSemanticDistance(entry.training, entry.validation) < distance;
+	}
+
+	// only entries added after the given sequence are considered
+	protected void findNearest(Node node, Individual individual, double[] training, double[] validation, long after,
+			Result result) {
+		if (node == null)
+			return;
+		if (node.entries != null) {
+			for (Entry entry : node.entries) {
+				if (entry.removed || entry.sequence <= after)
+					continue;
+				double d = euclideanDistance(training, validation, entry);
+				if (getCombinedDistanceBound(d, d) > result.distance)
+					continue;
+				offer(result, entry, individual.calculateCombinedSemanticDistance(entry.training, entry.validation));
+			}
+			return;
+		}
+		Entry vantagePoint = node.vantagePoint;
+		double d = euclideanDistance(training, validation, vantagePoint);
+		if (!vantagePoint.removed && vantagePoint.sequence > after)
+			offer(result, vantagePoint, individual.calculateCombinedSemanticDistance(vantagePoint.training, vantagePoint.validation));
+		// the closer side first, the bound is tighter for the other side
+		boolean insideFirst = d < node.radius;
+		for (int side = 0; side < 2; side++) {
+			boolean inside = insideFirst == (side == 0);
+			double minimum = inside ? getMinimumCombinedDistance(d, node.insideMinimum, node.insideMaximum)
+					: getMinimumCombinedDistance(d, node.outsideMinimum, node.outsideMaximum);
+			if (minimum <= result.distance)
+				findNearest(inside ? node.inside : node.outside, individual, training, validation, after, result);
+		}
+	}
+
+	protected static void offer(Result result, Entry entry, double distance) {
+		boolean better;
+		if (result.entry == null)
+			better = result.acceptEqual ? !(distance > result.distance) : distance < result.distance;
+		else
+			better = distance < result.distance || (distance == result.distance && entry.sequence < result.entry.sequence);
+		if (better) {
+			result.distance = distance;
+			result.entry = entry;
+		}
+	}
+
+	// a lower bound of the combined semantic distance to any entry whose euclidean distance to the vantage point is
+	// within [minimum, maximum], given the euclidean distance d of the query to the vantage point
+	protected double getMinimumCombinedDistance(double d, double minimum, double maximum) {
+		return getCombinedDistanceBound(Math.max(minimum - d, d - maximum), d + maximum);
+	}
+
+	// a lower bound of the combined semantic distance for a euclidean distance of at least the given one, calculated
+	// with a rounding error relative to scale
+	protected double getCombinedDistanceBound(double euclideanDistance, double scale) {
+		double bound = Math.max(0, euclideanDistance - DISTANCE_TOLERANCE * scale);
+		return Math.sqrt(bound * bound / trainingLength + validationLength);
+	}
+
+	protected static double euclideanDistance(double[] training, double[] validation, Entry entry) {
+		double d = 0;
+		for (int i = 0; i < training.length; i++) {
+			double difference = training[i] - entry.training[i];
+			d += difference * difference;
+		}
+		for (int i = 0; i < validation.length; i++) {
+			double difference = validation[i] - entry.validation[i];
+			d += difference * difference;
+		}
+		return Math.sqrt(d);
+	}
+
+	protected static boolean isEqual(double[] semantics, double[] repulsorSemantics) {
+		if (semantics.length < repulsorSemantics.length)
+			return false;
+		for (int d = 0; d < repulsorSemantics.length; d++) {
+			if (semantics[d] != repulsorSemantics[d])
+				return false;
+		}
+		return true;
+	}
+
+	protected static boolean isFinite(double[] values) {
+		for (double value : values) {
+			if (Double.isNaN(value) || Double.isInfinite(value))
+				return false;
+		}
+		return true;
+	}
+
+	// equal values (compared with ==) have equal hashes
+	protected static int hash(double[] values) {
+		if (values == null)
+			return 0;
+		int hash = 1;
+		for (double value : values) {
+			long bits = value == 0 ? 0 : Double.doubleToLongBits(value);
+			hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+		}
+		return hash;
+	}
+
+	protected Entry createEntry(Individual repulsor, long sequence) {
+		Entry entry = new Entry();
+		entry.individual = repulsor;
+		entry.training = repulsor.getTrainingDataOutputs();
+		entry.validation = repulsor.getValidationDataOutputs();
+		entry.sequence = sequence;
+		entry.hash = hash(entry.training);
+		return entry;
+	}
+
+	// the position of an entry in the repulsors, entries are kept in the order of their sequence
+	protected int indexOf(Entry entry) {
+		int low = 0;
+		int high = entries.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long sequence = entries.get(middle).sequence;
+			if (sequence < entry.sequence)
+				low = middle + 1;
+			else if (sequence > entry.sequence)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	protected void prepareIndex() {
+		if (entries == null) {
+			entries = new ArrayList<Entry>();
+			for (Individual repulsor : repulsors)
+				entries.add(createEntry(repulsor, nextSequence++));
+			rebuild();
+		}
+	}
+
+	// re-indexes a repulsor after its outputs changed, queries use the outputs a repulsor was indexed with until then
+	public void update(int index) {
+		prepareIndex();
+		Entry entry = entries.get(index);
+		unindex(entry);
+		Entry updated = createEntry(entry.individual, entry.sequence);
+		entries.set(index, updated);
+		index(updated);
+		maintain();
+	}
+
+	// re-indexes all repulsors, after the data they are evaluated on changed
+	public void updateAll() {
+		if (entries == null) {
+			prepareIndex();
+			return;
+		}
+		for (int i = 0; i < entries.size(); i++)
+			entries.set(i, createEntry(entries.get(i).individual, entries.get(i).sequence));
+		rebuild();
+	}
+
+	protected void index(Entry entry) {
+		if (entries.size() == 1) {
+			// the only repulsor determines the lengths, the tree might still hold removed ones of other lengths
+			trainingLength = entry.training == null ? -1 : entry.training.length;
+			validationLength = entry.validation == null ? -1 : entry.validation.length;
+			root = null;
+		}
+		addToHash(entry);
+		if (!entry.regular) {
+			// the tree is rebuilt once all irregular entries are gone
+			root = null;
+		} else if (root != null) {
+			insert(root, entry);
+		}
+	}
+
+	protected void unindex(Entry entry) {
+		entry.removed = true;
+		if (!entry.regular)
+			irregularEntries--;
+		ArrayList<Entry> bucket = trainingSemanticsIndex.get(entry.hash);
+		bucket.remove(entry);
+		if (bucket.isEmpty())
+			trainingSemanticsIndex.remove(entry.hash);
+		removedEntries++;
+	}
+
+	protected void addToHash(Entry entry) {
+		entry.regular = entry.training != null && entry.training.length == trainingLength && entry.validation != null
+				&& entry.validation.length == validationLength && isFinite(entry.training) && isFinite(entry.validation);
+		if (!entry.regular)
+			irregularEntries++;
+		ArrayList<Entry> bucket = trainingSemanticsIndex.get(entry.hash);
+		if (bucket == null) {
+			bucket = new ArrayList<Entry>(1);
+			trainingSemanticsIndex.put(entry.hash, bucket);
+		}
+		bucket.add(entry);
+	}
+
+	protected void maintain() {
+		if ((root == null && irregularEntries == 0) || entries.size() > 2 * Math.max(LEAF_SIZE, sizeAtBuild)
+				|| removedEntries > Math.max(LEAF_SIZE, entries.size()))
+			rebuild();
+	}
+
+	// builds the hash and the tree from the current entries only
+	protected void rebuild() {
+		trainingSemanticsIndex = new HashMap<Integer, ArrayList<Entry>>();
+		irregularEntries = 0;
+		removedEntries = 0;
+		sizeAtBuild = entries.size();
+		if (!entries.isEmpty()) {
+			trainingLength = entries.get(0).training == null ? -1 : entries.get(0).training.length;
+			validationLength = entries.get(0).validation == null ? -1 : entries.get(0).validation.length;
+		}
+		for (Entry entry : entries)
+			addToHash(entry);
+		root = irregularEntries > 0 ? null : build(new ArrayList<Entry>(entries));
+	}
+
+	// splits the entries at the median distance to the middle entry
+	protected Node build(ArrayList<Entry> nodeEntries) {
+		Node node = new Node();
+		if (nodeEntries.size() <= LEAF_SIZE) {
+			node.entries = nodeEntries;
+			return node;
+		}
+		final Entry vantagePoint = nodeEntries.remove(nodeEntries.size() / 2);
+		final HashMap<Entry, Double> distances = new HashMap<Entry, Double>();
+		for (Entry entry : nodeEntries)
+			distances.put(entry, euclideanDistance(vantagePoint.training, vantagePoint.validation, entry));
+		Entry[] sorted = nodeEntries.toArray(new Entry[nodeEntries.size()]);
+		Arrays.sort(sorted, new Comparator<Entry>() {
+			public int compare(Entry a, Entry b) {
+				return Double.compare(distances.get(a), distances.get(b));
+			}
+		});
+		int half = sorted.length / 2;
+		node.vantagePoint = vantagePoint;
+		node.insideMinimum = distances.get(sorted[0]);
+		node.insideMaximum = distances.get(sorted[half - 1]);
+		node.outsideMinimum = distances.get(sorted[half]);
+		node.outsideMaximum = distances.get(sorted[sorted.length - 1]);
+		node.radius = (node.insideMaximum + node.outsideMinimum) / 2;
+		node.inside = build(new ArrayList<Entry>(Arrays.asList(sorted).subList(0, half)));
+		node.outside = build(new ArrayList<Entry>(Arrays.asList(sorted).subList(half, sorted.length)));
+		return node;
+	}
+
+	// adds an entry to the leaf it belongs to, widening the distance ranges on the way
+	protected void insert(Node node, Entry entry) {
+		while (node.entries == null) {
+			double d = euclideanDistance(node.vantagePoint.training, node.vantagePoint.validation, entry);
+			if (d < node.radius) {
+				node.insideMinimum = Math.min(node.insideMinimum, d);
+				node.insideMaximum = Math.max(node.insideMaximum, d);
+				node = node.inside;
+			} else {
+				node.outsideMinimum = Math.min(node.outsideMinimum, d);
+				node.outsideMaximum = Math.max(node.outsideMaximum, d);
+				node = node.outside;
+			}
+		}
+		node.entries.add(entry);
+		if (node.entries.size() > 2 * LEAF_SIZE) {
+			// removed entries are dropped when a leaf is split
+			ArrayList<Entry> remaining = new ArrayList<Entry>();
+			for (Entry leafEntry : node.entries) {
+				if (!leafEntry.removed)
+					remaining.add(leafEntry);
+			}
+			Node split = build(remaining);
+			node.entries = split.entries;
+			node.vantagePoint = split.vantagePoint;
+			node.radius = split.radius;
+			node.inside = split.inside;
+			node.outside = split.outside;
+			node.insideMinimum = split.insideMinimum;
+			node.insideMaximum = split.insideMaximum;
+			node.outsideMinimum = split.outsideMinimum;
+			node.outsideMaximum = split.outsideMaximum;
+		}
+	}
+}
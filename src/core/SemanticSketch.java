@@ -0,0 +1,108 @@
+package core;
+
+// random projection of semantics to a few dimensions that keeps squared euclidean distances in expectation
+// (Johnson-Lindenstrauss): every row is added to one of the dimensions with a random sign (a count sketch, the
+// sparse form of the projection), so a sketch costs one pass over the outputs. The estimate of a squared distance has
+// a standard deviation of at most sqrt(2 / dimensions) times the distance, distances are treated as known within
+// ERROR_DEVIATIONS of these deviations and calculated exactly where that is not enough to decide. There is no
+// concentration guarantee for a single count sketch, Chebyshev only bounds the share of estimates outside the bounds
+// by 1 / ERROR_DEVIATIONS^2: with thousands of estimates per generation some of them are outside their bounds in most
+// generations, so everything decided with sketches (repulsor ranks, pruned archive queries) is approximate.
+public class SemanticSketch {
+
+	protected static final double ERROR_DEVIATIONS = 3;
+	// training and validation rows are projected independently, their sketches add up to the sketch of both
+	protected static final long TRAINING_SALT = 0x5851F42D4C957F2DL;
+	protected static final long VALIDATION_SALT = 0x14057B7EF767814FL;
+
+	protected int dimensions;
+	protected long seed;
+	protected double relativeError;
+
+	public SemanticSketch(int dimensions, long seed) {
+		this.dimensions = dimensions;
+		this.seed = seed;
+		this.relativeError = ERROR_DEVIATIONS * Math.sqrt(2.0 / dimensions);
+	}
+
+	public int getDimensions() {
+		return dimensions;
+	}
+
+	public double[] sketchTrainingOutputs(double[] outputs) {
+		return sketch(outputs, TRAINING_SALT);
+	}
+
+	public double[] sketchValidationOutputs(double[] outputs) {
+		return sketch(outputs, VALIDATION_SALT);
+	}
+
+	protected double[] sketch(double[] outputs, long salt) {
+		double[] sketch = new double[dimensions];
+		for (int row = 0; row < outputs.length; row++) {
+			long bits = mix(seed ^ salt, row);
+			int dimension = (int) ((bits >>> 1) % dimensions);
+			if ((bits & 1) == 0)
+				sketch[dimension] += outputs[row];
+			else
+				sketch[dimension] -= outputs[row];
+		}
+		return sketch;
+	}
+
+	// splitmix64 of the row, a fixed random dimension and sign per row
+	protected static long mix(long seed, long row) {
+		long z = seed + (row + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	// estimated squared euclidean distance of the training and validation semantics of both individuals
+	public double estimateSquaredCombinedDistance(Individual individual, Individual other) {
+		double[] training = individual.getTrainingSketch();
+		double[] validation = individual.getValidationSketch();
+		double[] otherTraining = other.getTrainingSketch();
+		double[] otherValidation = other.getValidationSketch();
+		double d = 0;
+		for (int i = 0; i < dimensions; i++) {
+			double difference = training[i] + validation[i] - otherTraining[i] - otherValidation[i];
+			d += difference * difference;
+		}
+		return d;
+	}
+
+	// estimated squared euclidean distance of the validation semantics of both individuals
+	public double estimateSquaredValidationDistance(Individual individual, Individual other) {
+		double[] validation = individual.getValidationSketch();
+		double[] otherValidation = other.getValidationSketch();
+		double d = 0;
+		for (int i = 0; i < dimensions; i++) {
+			double difference = validation[i] - otherValidation[i];
+			d += difference * difference;
+		}
+		return d;
+	}
+
+	// the bounds the squared distance lies in for an estimate: the estimate is within relativeError of the distance,
+	// so the distance is within [estimate / (1 + relativeError), estimate / (1 - relativeError)]
+	public double getLowerBound(double estimate) {
+		return estimate / (1 + relativeError);
+	}
+
+	public double getUpperBound(double estimate) {
+		if (relativeError >= 1)
+			return Double.POSITIVE_INFINITY;
+		return estimate / (1 - relativeError);
+	}
+
+	// the distances Individual.calculateCombinedSemanticDistance and calculateValidationSemanticDistance derive from
+	// a squared euclidean distance to a repulsor with the given number of training and validation rows
+	public static double toCombinedDistance(double squaredDistance, int trainingLength, int validationLength) {
+		return Math.sqrt(squaredDistance / trainingLength + validationLength);
+	}
+
+	public static double toValidationDistance(double squaredDistance, int validationLength) {
+		return Math.sqrt(squaredDistance / validationLength);
+	}
+}
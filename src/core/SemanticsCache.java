@@ -0,0 +1,240 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import programElements.Constant;
+import programElements.InputVariable;
+import programElements.Operator;
+import programElements.ProgramElement;
+
+// memory bounded cache of subtree outputs (training/validation/unseen) shared by all individuals of a run
+public class SemanticsCache {
+
+	// identifies a subtree by its 64 bit structural hash, the elements are only compared on hash collisions;
+	// lookups refer to the program being evaluated, keys stored in the cache own a copy of the subtree's elements
+	protected static class SubtreeKey {
+		protected long hash;
+		protected List<ProgramElement> program;
+		protected ProgramElement[] elements;
+		protected int start, end;
+
+		protected SubtreeKey(long hash, List<ProgramElement> program, int start, int end) {
+			this.hash = hash;
+			this.program = program;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected SubtreeKey(long hash, ProgramElement[] elements) {
+			this.hash = hash;
+			this.elements = elements;
+			this.start = 0;
+			this.end = elements.length;
+		}
+
+		protected ProgramElement getElement(int i) {
+			return elements != null ? elements[start + i] : program.get(start + i);
+		}
+
+		// a key that does not keep the evaluated program alive and can't change with it
+		protected SubtreeKey copy() {
+			ProgramElement[] copy = new ProgramElement[end - start];
+			for (int i = 0; i < copy.length; i++) {
+				copy[i] = getElement(i);
+			}
+			return new SubtreeKey(hash, copy);
+		}
+
+		// the key object and its array of element references (the elements are shared with the programs)
+		protected long getBytes() {
+			return 48 + 16 + 8L * (end - start);
+		}
+
+		public int hashCode() {
+			return (int) (hash ^ (hash >>> 32));
+		}
+
+		public boolean equals(Object other) {
+			if (!(other instanceof SubtreeKey)) {
+				return false;
+			}
+			SubtreeKey key = (SubtreeKey) other;
+			if (hash != key.hash || end - start != key.end - key.start) {
+				return false;
+			}
+			for (int i = 0; i < end - start; i++) {
+				if (!getElement(i).equals(key.getElement(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	protected static class Entry {
+		protected double[][] outputs = new double[3][];
+		protected long bytes;
+	}
+
+	protected LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>(1024, 0.75f, true);
+	protected long maximumBytes;
+	protected long bytes;
+	protected long hits, misses;
+
+	// outputs are only valid for the data they were computed on
+	protected Data data;
+	protected long dataModificationCount;
+
+	public SemanticsCache(long maximumBytes) {
+		this.maximumBytes = maximumBytes;
+	}
+
+	public double[] get(Object key, int split) {
+		Entry entry = entries.get(key);
+		if (entry == null || entry.outputs[split] == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.outputs[split];
+	}
+
+	// cached arrays are shared and must not be modified afterwards
+	public void put(Object key, int split, double[] outputs) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry();
+			if (key instanceof SubtreeKey) {
+				SubtreeKey subtreeKey = ((SubtreeKey) key).copy();
+				key = subtreeKey;
+				entry.bytes += subtreeKey.getBytes();
+				bytes += subtreeKey.getBytes();
+			}
+			entries.put(key, entry);
+		}
+		if (entry.outputs[split] != null) {
+			return;
+		}
+		entry.outputs[split] = outputs;
+		long size = 16 + 8L * outputs.length;
+		entry.bytes += size;
+		bytes += size;
+		evict();
+	}
+
+	// removes the least recently used entries until the cache fits into its memory budget
+	protected void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (bytes > maximumBytes && iterator.hasNext()) {
+			bytes -= iterator.next().bytes;
+			iterator.remove();
+		}
+	}
+
+	public void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	protected void validate(Data data) {
+		if (this.data != data || dataModificationCount != data.getModificationCount()) {
+			clear();
+			this.data = data;
+			dataModificationCount = data.getModificationCount();
+		}
+	}
+
+	// evaluates a program on one data split, reusing the outputs of every subtree that has been seen before
+	public double[] evaluate(List<ProgramElement> program, Data data, int split) {
+		validate(data);
+		int length = program.size();
+		long[] hashes = new long[length];
+		int[] ends = new int[length];
+		computeSubtreeHashes(program, hashes, ends);
+		double[][] columns = data.getColumns(split);
+		int rows = columns.length == 0 ? 0 : columns[0].length;
+		double[] outputs = evaluateSubtree(program, 0, hashes, ends, columns, rows, split);
+		// never hand out a data column as the outputs of an individual
+		return program.get(0) instanceof InputVariable ? outputs.clone() : outputs;
+	}
+
+	protected double[] evaluateSubtree(List<ProgramElement> program, int position, long[] hashes, int[] ends,
+			double[][] columns, int rows, int split) {
+		ProgramElement element = program.get(position);
+		if (element instanceof InputVariable) {
+			return columns[((InputVariable) element).getVariableIndex()];
+		}
+		if (element instanceof Constant) {
+			double[] outputs = new double[rows];
+			Arrays.fill(outputs, ((Constant) element).getValue());
+			return outputs;
+		}
+		SubtreeKey key = new SubtreeKey(hashes[position], program, position, ends[position]);
+		double[] outputs = get(key, split);
+		if (outputs != null) {
+			return outputs;
+		}
+		Operator operator = (Operator) element;
+		double[][] arguments = new double[operator.getArity()][];
+		int child = position + 1;
+		for (int a = 0; a < arguments.length; a++) {
+			arguments[a] = evaluateSubtree(program, child, hashes, ends, columns, rows, split);
+			child = ends[child];
+		}
+		outputs = new double[rows];
+		operator.performArrayOperation(arguments, outputs, rows);
+		put(key, split, outputs);
+		return outputs;
+	}
+
+	// computes the structural hash and the (exclusive) end index of every subtree of a prefix program
+	public static void computeSubtreeHashes(List<ProgramElement> program, long[] hashes, int[] ends) {
+		int[] stack = new int[program.size()];
+		int top = 0;
+		for (int position = program.size() - 1; position >= 0; position--) {
+			ProgramElement element = program.get(position);
+			long hash = mix(element.hashCode() * 0x9E3779B97F4A7C15L + element.getClass().getName().hashCode());
+			int end = position + 1;
+			if (element instanceof Operator) {
+				// children are popped in argument order
+				for (int a = 0; a < ((Operator) element).getArity(); a++) {
+					int child = stack[--top];
+					hash = mix(hash * 31 + hashes[child]);
+					end = ends[child];
+				}
+			}
+			hashes[position] = hash;
+			ends[position] = end;
+			stack[top++] = position;
+		}
+	}
+
+	protected static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public double getHitRate() {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public int getSize() {
+		return entries.size();
+	}
+}
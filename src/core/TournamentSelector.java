@@ -0,0 +1,72 @@
+package core;
+
+import java.util.Random;
+
+// tournament selection over indices into a population, reading the training errors and ranks captured by prepare()
+public class TournamentSelector {
+
+	protected Random randomGenerator;
+
+	protected double[] trainingErrors = new double[0];
+	protected int[] ranks = new int[0];
+	protected int size;
+
+	// contestants with the best rank (true pareto selection draws one of them)
+	protected int[] bestContestants = new int[0];
+
+	public TournamentSelector(Random randomGenerator) {
+		this.randomGenerator = randomGenerator;
+	}
+
+	// has to be called whenever errors or ranks of the population changed, arrays are only reallocated if it grew
+	public void prepare(Population population) {
+		size = population.getSize();
+		if (trainingErrors.length < size) {
+			trainingErrors = new double[size];
+			ranks = new int[size];
+		}
+		// copied, the columns of the population are refilled in place
+		System.arraycopy(population.getColumn(Objective.TRAINING), 0, trainingErrors, 0, size);
+		double[] rankColumn = population.getColumn(Objective.RANK);
+		for (int i = 0; i < size; i++) {
+			ranks[i] = (int) rankColumn[i];
+		}
+	}
+
+	// lowest training error, the first contestant drawn wins ties
+	public int select(int tournamentSize) {
+		int best = randomGenerator.nextInt(size);
+		for (int t = 1; t < tournamentSize; t++) {
+			int contestant = randomGenerator.nextInt(size);
+			if (trainingErrors[contestant] < trainingErrors[best])
+				best = contestant;
+		}
+		return best;
+	}
+
+	// lowest rank, ties are broken by training error or, with true pareto selection, at random
+	public int selectNonDominated(int tournamentSize, boolean trueParetoSelection) {
+		if (!trueParetoSelection) {
+			int best = randomGenerator.nextInt(size);
+			for (int t = 1; t < tournamentSize; t++) {
+				int contestant = randomGenerator.nextInt(size);
+				if (ranks[contestant] < ranks[best]
+						|| (ranks[contestant] == ranks[best] && trainingErrors[contestant] < trainingErrors[best]))
+					best = contestant;
+			}
+			return best;
+		}
+		if (bestContestants.length < tournamentSize)
+			bestContestants = new int[tournamentSize];
+		int numberOfBest = 0;
+		for (int t = 0; t < tournamentSize; t++) {
+			int contestant = randomGenerator.nextInt(size);
+			if (numberOfBest == 0 || ranks[contestant] < ranks[bestContestants[0]])
+				numberOfBest = 0;
+			else if (ranks[contestant] > ranks[bestContestants[0]])
+				continue;
+			bestContestants[numberOfBest++] = contestant;
+		}
+		return bestContestants[randomGenerator.nextInt(numberOfBest)];
+	}
+}
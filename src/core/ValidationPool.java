@@ -0,0 +1,195 @@
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// the validation elite (or worst) used to detect overfitting: individuals kept sorted by validation error together with
+// running sums, so that insertions are a binary search plus one array shift (linear in the size of the pool, which is
+// small) and median, average, standard deviation, best and worst take constant or logarithmic time; the validation
+// error of an individual is taken when it is added or when the pool is updated
+public class ValidationPool implements Serializable {
+
+	private static final long serialVersionUID = 7L;
+
+	protected Individual[] individuals;
+	protected double[] errors;
+	// the order of insertion, equal errors are kept in this order
+	protected long[] sequences;
+	protected long nextSequence;
+	protected int size;
+
+	// sums of (error - shift) and (error - shift)^2, the shift is the median at the last recalculation, which keeps
+	// the variance from cancelling out when the errors are close to each other
+	protected double shift;
+	protected double sum;
+	protected double sumOfSquares;
+	// the sums are recalculated from the errors after size updates, so rounding errors can not accumulate
+	protected int updatesSinceRecalculation;
+
+	public ValidationPool() {
+		this(16);
+	}
+
+	public ValidationPool(int initialCapacity) {
+		individuals = new Individual[Math.max(1, initialCapacity)];
+		errors = new double[individuals.length];
+		sequences = new long[individuals.length];
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	// individuals by increasing validation error (undefined errors last)
+	public Individual getIndividual(int index) {
+		return individuals[index];
+	}
+
+	public void addIndividual(Individual individual) {
+		if (size == individuals.length) {
+			individuals = Arrays.copyOf(individuals, 2 * size);
+			errors = Arrays.copyOf(errors, 2 * size);
+			sequences = Arrays.copyOf(sequences, 2 * size);
+		}
+		double error = individual.getValidationError();
+		// after all equal errors, in the order of insertion
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (Double.compare(errors[middle], error) <= 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		System.arraycopy(individuals, low, individuals, low + 1, size - low);
+		System.arraycopy(errors, low, errors, low + 1, size - low);
+		System.arraycopy(sequences, low, sequences, low + 1, size - low);
+		individuals[low] = individual;
+		errors[low] = error;
+		sequences[low] = nextSequence++;
+		size++;
+		sum += error - shift;
+		sumOfSquares += (error - shift) * (error - shift);
+		updated();
+	}
+
+	public Individual removeBest() {
+		return removeIndividual(0);
+	}
+
+	public Individual removeWorst() {
+		return removeIndividual(getWorstIndex());
+	}
+
+	// the largest defined error (the first inserted one on ties), undefined errors are never the worst unless all are
+	protected int getWorstIndex() {
+		int undefined = getFirstIndex(Double.NaN);
+		if (undefined == 0)
+			return 0;
+		return getFirstIndex(errors[undefined - 1]);
+	}
+
+	// the first position with an error not less than the given one
+	protected int getFirstIndex(double error) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (Double.compare(errors[middle], error) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	protected Individual removeIndividual(int index) {
+		Individual individual = individuals[index];
+		double error = errors[index];
+		System.arraycopy(individuals, index + 1, individuals, index, size - index - 1);
+		System.arraycopy(errors, index + 1, errors, index, size - index - 1);
+		System.arraycopy(sequences, index + 1, sequences, index, size - index - 1);
+		individuals[--size] = null;
+		if (Double.isNaN(error) || Double.isInfinite(error)) {
+			// can't be subtracted from the sums
+			recalculateSums();
+		} else {
+			sum -= error - shift;
+			sumOfSquares -= (error - shift) * (error - shift);
+			updated();
+		}
+		return individual;
+	}
+
+	// sorts the pool again by the current validation errors, after they changed (new validation data or merged
+	// individuals)
+	public void update() {
+		final double[] currentErrors = new double[size];
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			currentErrors[i] = individuals[i].getValidationError();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int comparison = Double.compare(currentErrors[a], currentErrors[b]);
+				return comparison != 0 ? comparison : Long.compare(sequences[a], sequences[b]);
+			}
+		});
+		Individual[] sortedIndividuals = new Individual[individuals.length];
+		long[] sortedSequences = new long[sequences.length];
+		for (int i = 0; i < size; i++) {
+			sortedIndividuals[i] = individuals[order[i]];
+			errors[i] = currentErrors[order[i]];
+			sortedSequences[i] = sequences[order[i]];
+		}
+		individuals = sortedIndividuals;
+		sequences = sortedSequences;
+		recalculateSums();
+	}
+
+	protected void updated() {
+		if (++updatesSinceRecalculation >= size)
+			recalculateSums();
+	}
+
+	protected void recalculateSums() {
+		shift = size > 0 ? getMedianFitness() : 0;
+		if (Double.isNaN(shift) || Double.isInfinite(shift))
+			shift = 0;
+		sum = 0;
+		sumOfSquares = 0;
+		for (int i = 0; i < size; i++) {
+			sum += errors[i] - shift;
+			sumOfSquares += (errors[i] - shift) * (errors[i] - shift);
+		}
+		updatesSinceRecalculation = 0;
+	}
+
+	public double getBestFitness() {
+		return errors[0];
+	}
+
+	public double getWorstFitness() {
+		return errors[getWorstIndex()];
+	}
+
+	public double getMedianFitness() {
+		if (size%2 > 0) {
+			return errors[size/2];
+		} else {
+			return (errors[(size/2)-1]+errors[size/2])/2;
+		}
+	}
+
+	public double getAverageFitness() {
+		return shift + sum/size;
+	}
+
+	public double getStandardDeviation() {
+		double mean = sum/size;
+		return Math.sqrt(Math.max(0, sumOfSquares/size - mean*mean));
+	}
+}
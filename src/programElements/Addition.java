@@ -12,6 +12,10 @@ public class Addition extends Operator {
 		return arguments[0] + arguments[1];
 	}
 
+	public void performArrayOperation(double[][] arguments, double[] output, int length) {
+		ArrayKernels.get().add(arguments[0], arguments[1], output, length);
+	}
+
 	public String toString() {
 		return "+";
 	}
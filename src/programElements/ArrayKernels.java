@@ -0,0 +1,47 @@
+package programElements;
+
+// element wise operator implementations over whole columns, output may alias any of the inputs
+public abstract class ArrayKernels {
+
+	protected static boolean useVectorKernels = true;
+	protected static ArrayKernels instance;
+
+	public static ArrayKernels get() {
+		if (instance == null) {
+			instance = create();
+		}
+		return instance;
+	}
+
+	public static void setUseVectorKernels(boolean flag) {
+		ArrayKernels.useVectorKernels = flag;
+		instance = null;
+	}
+
+	// the vector kernels need the jdk.incubator.vector module, fall back to plain loops if it is not available
+	protected static ArrayKernels create() {
+		if (useVectorKernels) {
+			try {
+				Class<?> vectorKernels = Class.forName("programElements.VectorKernels");
+				return (ArrayKernels) vectorKernels.getDeclaredConstructor().newInstance();
+			} catch (Throwable e) {
+				// module not resolved or class not compiled in
+			}
+		}
+		return new ScalarKernels();
+	}
+
+	public abstract void add(double[] first, double[] second, double[] output, int length);
+
+	public abstract void subtract(double[] first, double[] second, double[] output, int length);
+
+	public abstract void multiply(double[] first, double[] second, double[] output, int length);
+
+	public abstract void protectedDivide(double[] numerator, double[] denominator, double[] output, int length);
+
+	public abstract void sine(double[] argument, double[] output, int length);
+
+	public abstract void logistic(double[] argument, double[] output, int length);
+
+	public abstract String getName();
+}
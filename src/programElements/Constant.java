@@ -14,6 +14,15 @@ public class Constant extends Terminal {
 		return value;
 	}
 
+	public boolean equals(Object other) {
+		return other instanceof Constant
+				&& Double.doubleToLongBits(value) == Double.doubleToLongBits(((Constant) other).value);
+	}
+
+	public int hashCode() {
+		return Double.hashCode(value);
+	}
+
 	public String toString() {
 		return "C" + value;
 	}
@@ -18,6 +18,14 @@ public class InputVariable extends Terminal {
 		return variableIndex;
 	}
 
+	public boolean equals(Object other) {
+		return other instanceof InputVariable && variableIndex == ((InputVariable) other).variableIndex;
+	}
+
+	public int hashCode() {
+		return 31 * variableIndex + 17;
+	}
+
 	public String toString() {
 		return "X" + variableIndex;
 	}
@@ -14,6 +14,10 @@ public class LogisticFunction extends Operator {
 		return Utils.logisticFunction(arguments[0]);
 	}
 
+	public void performArrayOperation(double[][] arguments, double[] output, int length) {
+		ArrayKernels.get().logistic(arguments[0], output, length);
+	}
+
 	public String toString() {
 		return "LF";
 	}
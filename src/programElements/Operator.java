@@ -16,5 +16,25 @@ public abstract class Operator extends ProgramElement {
 		return arity;
 	}
 	
+	// operators are stateless, so all instances of an operator class are interchangeable
+	public boolean equals(Object other) {
+		return other != null && other.getClass() == getClass();
+	}
+
+	public int hashCode() {
+		return getClass().getName().hashCode();
+	}
+
 	public abstract double performOperation(double... arguments);
+
+	// applies the operator to whole columns, arguments[a] holding the values of argument a
+	public void performArrayOperation(double[][] arguments, double[] output, int length) {
+		double[] values = new double[arity];
+		for (int i = 0; i < length; i++) {
+			for (int a = 0; a < arity; a++) {
+				values[a] = arguments[a][i];
+			}
+			output[i] = performOperation(values);
+		}
+	}
 }
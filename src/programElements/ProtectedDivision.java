@@ -18,6 +18,10 @@ public class ProtectedDivision extends Operator {
 		}
 	}
 
+	public void performArrayOperation(double[][] arguments, double[] output, int length) {
+		ArrayKernels.get().protectedDivide(arguments[0], arguments[1], output, length);
+	}
+
 	public String toString() {
 		return "/";
 	}
@@ -0,0 +1,50 @@
+package programElements;
+
+import utils.Utils;
+
+public class ScalarKernels extends ArrayKernels {
+
+	public void add(double[] first, double[] second, double[] output, int length) {
+		for (int i = 0; i < length; i++) {
+			output[i] = first[i] + second[i];
+		}
+	}
+
+	public void subtract(double[] first, double[] second, double[] output, int length) {
+		for (int i = 0; i < length; i++) {
+			output[i] = first[i] - second[i];
+		}
+	}
+
+	public void multiply(double[] first, double[] second, double[] output, int length) {
+		for (int i = 0; i < length; i++) {
+			output[i] = first[i] * second[i];
+		}
+	}
+
+	public void protectedDivide(double[] numerator, double[] denominator, double[] output, int length) {
+		for (int i = 0; i < length; i++) {
+			if (Math.abs(denominator[i]) < ProtectedDivision.MINIMUM_DENOMINATOR_VALUE) {
+				output[i] = numerator[i];
+			} else {
+				output[i] = numerator[i] / denominator[i];
+			}
+		}
+	}
+
+	public void sine(double[] argument, double[] output, int length) {
+		for (int i = 0; i < length; i++) {
+			output[i] = Math.sin(argument[i]);
+		}
+	}
+
+	public void logistic(double[] argument, double[] output, int length) {
+		for (int i = 0; i < length; i++) {
+			output[i] = Utils.logisticFunction(argument[i]);
+		}
+	}
+
+	public String getName() {
+		return "scalar";
+	}
+}
@@ -12,6 +12,10 @@ public class Sine extends Operator {
 		return Math.sin(arguments[0]);
 	}
 
+	public void performArrayOperation(double[][] arguments, double[] output, int length) {
+		ArrayKernels.get().sine(arguments[0], output, length);
+	}
+
 	public String toString() {
 		return "sin(";
 	}
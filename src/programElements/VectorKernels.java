@@ -0,0 +1,95 @@
+package programElements;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import utils.Utils;
+
+// requires --add-modules jdk.incubator.vector at compile and run time, otherwise ScalarKernels are used.
+// add, subtract, multiply and divide are exact, sine and the logistic function may differ from
+// Math.sin/Math.exp by an ulp because they use the platform's vector math intrinsics.
+public class VectorKernels extends ArrayKernels {
+
+	protected static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	public void add(double[] first, double[] second, double[] output, int length) {
+		int i = 0;
+		for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+			DoubleVector a = DoubleVector.fromArray(SPECIES, first, i);
+			DoubleVector b = DoubleVector.fromArray(SPECIES, second, i);
+			a.add(b).intoArray(output, i);
+		}
+		for (; i < length; i++) {
+			output[i] = first[i] + second[i];
+		}
+	}
+
+	public void subtract(double[] first, double[] second, double[] output, int length) {
+		int i = 0;
+		for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+			DoubleVector a = DoubleVector.fromArray(SPECIES, first, i);
+			DoubleVector b = DoubleVector.fromArray(SPECIES, second, i);
+			a.sub(b).intoArray(output, i);
+		}
+		for (; i < length; i++) {
+			output[i] = first[i] - second[i];
+		}
+	}
+
+	public void multiply(double[] first, double[] second, double[] output, int length) {
+		int i = 0;
+		for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+			DoubleVector a = DoubleVector.fromArray(SPECIES, first, i);
+			DoubleVector b = DoubleVector.fromArray(SPECIES, second, i);
+			a.mul(b).intoArray(output, i);
+		}
+		for (; i < length; i++) {
+			output[i] = first[i] * second[i];
+		}
+	}
+
+	public void protectedDivide(double[] numerator, double[] denominator, double[] output, int length) {
+		int i = 0;
+		for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+			DoubleVector a = DoubleVector.fromArray(SPECIES, numerator, i);
+			DoubleVector b = DoubleVector.fromArray(SPECIES, denominator, i);
+			// lanes with a too small denominator keep the numerator
+			VectorMask<Double> small = b.abs().compare(VectorOperators.LT, ProtectedDivision.MINIMUM_DENOMINATOR_VALUE);
+			a.div(b).blend(a, small).intoArray(output, i);
+		}
+		for (; i < length; i++) {
+			if (Math.abs(denominator[i]) < ProtectedDivision.MINIMUM_DENOMINATOR_VALUE) {
+				output[i] = numerator[i];
+			} else {
+				output[i] = numerator[i] / denominator[i];
+			}
+		}
+	}
+
+	public void sine(double[] argument, double[] output, int length) {
+		int i = 0;
+		for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+			DoubleVector.fromArray(SPECIES, argument, i).lanewise(VectorOperators.SIN).intoArray(output, i);
+		}
+		for (; i < length; i++) {
+			output[i] = Math.sin(argument[i]);
+		}
+	}
+
+	public void logistic(double[] argument, double[] output, int length) {
+		DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+		int i = 0;
+		for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+			DoubleVector x = DoubleVector.fromArray(SPECIES, argument, i);
+			one.div(x.neg().lanewise(VectorOperators.EXP).add(one)).intoArray(output, i);
+		}
+		for (; i < length; i++) {
+			output[i] = Utils.logisticFunction(argument[i]);
+		}
+	}
+
+	public String getName() {
+		return "vector (" + SPECIES.length() + " lanes)";
+	}
+}
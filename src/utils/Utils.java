@@ -4,6 +4,9 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.File;
 import java.io.PrintWriter;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -11,8 +14,10 @@ import java.util.StringTokenizer;
 import java.lang.Math;
 import java.text.DecimalFormat;
 
+import core.AncestryLog;
 import core.Data;
 import core.Main;
+import programElements.ProgramElement;
 
 public class Utils {
 
@@ -33,6 +38,10 @@ public class Utils {
 	private static PrintWriter fslog = null;
 	private static PrintWriter fsRepulserDistances = null;
 	private static PrintWriter fsSpecificSemantics = null;
+	private static DataOutputStream fsAncestry = null;
+	private static DataOutputStream fsRandomTrees = null;
+	private static String ancestryFilename = null;
+	private static String randomTreesFilename = null;
 
 	private static DecimalFormat decFormatter;
 
@@ -223,6 +232,78 @@ public class Utils {
 						case "divide_and_reshuffle":
 							Main.DIVIDE_AND_RESHUFFLE = Integer.parseInt(parts[1]);
 							break;
+						case "batch_evaluation":
+							Main.BATCH_EVALUATION = (Integer.parseInt(parts[1]) == 1);
+							break;
+						case "vector_kernels":
+							Main.VECTOR_KERNELS = (Integer.parseInt(parts[1]) == 1);
+							break;
+						case "semantics_cache_size":
+							Main.SEMANTICS_CACHE_SIZE = Integer.parseInt(parts[1]);
+							break;
+						case "incremental_evaluation":
+							Main.INCREMENTAL_EVALUATION = (Integer.parseInt(parts[1]) == 1);
+							break;
+						case "jit_compile_threshold":
+							Main.JIT_COMPILE_THRESHOLD = Integer.parseInt(parts[1]);
+							break;
+						case "jit_size_threshold":
+							Main.JIT_SIZE_THRESHOLD = Integer.parseInt(parts[1]);
+							break;
+						case "jit_cache_size":
+							Main.JIT_CACHE_SIZE = Integer.parseInt(parts[1]);
+							break;
+						case "early_abort_fraction":
+							Main.EARLY_ABORT_FRACTION = Double.parseDouble(parts[1]);
+							break;
+						case "simplification":
+							Main.SIMPLIFICATION = (Integer.parseInt(parts[1]) == 1);
+							break;
+						case "simplify_genotype":
+							Main.SIMPLIFY_GENOTYPE = (Integer.parseInt(parts[1]) == 1);
+							break;
+						case "fitness_cache_size":
+							Main.FITNESS_CACHE_SIZE = Integer.parseInt(parts[1]);
+							break;
+						case "subsample_size":
+							Main.SUBSAMPLE_SIZE = Integer.parseInt(parts[1]);
+							break;
+						case "subsample_rotation":
+							Main.SUBSAMPLE_ROTATION = Integer.parseInt(parts[1]);
+							break;
+						case "random_tree_pool_size":
+							Main.RANDOM_TREE_POOL_SIZE = Integer.parseInt(parts[1]);
+							break;
+						case "non_domination_sort":
+							Main.NON_DOMINATION_SORT = Integer.parseInt(parts[1]);
+							break;
+						case "sort_threads":
+							Main.SORT_THREADS = Integer.parseInt(parts[1]);
+							break;
+						case "max_distance_sweeps":
+							Main.MAX_DISTANCE_SWEEPS = Integer.parseInt(parts[1]);
+							break;
+						case "sketch_dimensions":
+							Main.SKETCH_DIMENSIONS = Integer.parseInt(parts[1]);
+							break;
+						case "rank_selection":
+							Main.RANK_SELECTION = (Integer.parseInt(parts[1]) == 1);
+							break;
+						case "gsgp":
+							Main.GSGP = (Integer.parseInt(parts[1]) == 1);
+							break;
+						case "gsgp_build_individuals":
+							Main.GSGP_BUILD_INDIVIDUALS = (Integer.parseInt(parts[1]) == 1);
+							break;
+						case "gsgp_mutation_step":
+							Main.GSGP_MUTATION_STEP = Double.parseDouble(parts[1]);
+							break;
+						case "gsgp_bounded_mutation":
+							Main.GSGP_BOUNDED_MUTATION = (Integer.parseInt(parts[1]) == 1);
+							break;
+						case "gsgp_ancestry_log":
+							Main.GSGP_ANCESTRY_LOG = (Integer.parseInt(parts[1]) == 1);
+							break;
 					}
 				} catch (Exception e){
 					log(LogTag.LOG, "Failed reading configuration: " + line);
@@ -325,6 +406,57 @@ public class Utils {
 		}
 	}
 
+	// binary ancestry of geometric semantic offspring, see core.AncestryLog for the format
+	public static void attachAncestryLogger(String stamp){
+		ancestryFilename = Main.OUTPUT_DIR+"/"+stamp+"-ancestry.bin";
+		randomTreesFilename = Main.OUTPUT_DIR+"/"+stamp+"-randomtrees.bin";
+		try{
+			fsAncestry = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(ancestryFilename)));
+		} catch (Exception e){}
+		try{
+			fsRandomTrees = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(randomTreesFilename)));
+		} catch (Exception e){}
+	}
+
+	public static boolean isAncestryLoggerAttached(){
+		return fsAncestry != null && fsRandomTrees != null;
+	}
+
+	public static void logAncestry(long id, int operator, long first, long second, long randomTree1, long randomTree2,
+			double mutationStep, boolean boundedMutation){
+		if (fsAncestry != null){
+			try{
+				AncestryLog.writeRecord(fsAncestry, id, operator, first, second, randomTree1, randomTree2, mutationStep, boundedMutation);
+			} catch (Exception e){}
+		}
+	}
+
+	public static void logRandomTree(long id, List<ProgramElement> program){
+		if (fsRandomTrees != null){
+			try{
+				AncestryLog.writeProgram(fsRandomTrees, id, program);
+			} catch (Exception e){}
+		}
+	}
+
+	// the ancestry files have to be flushed before a model is reconstructed from them
+	public static void flushAncestryLogger(){
+		try{
+			fsAncestry.flush();
+		} catch(Exception e){}
+		try{
+			fsRandomTrees.flush();
+		} catch(Exception e){}
+	}
+
+	public static String getAncestryFilename(){
+		return ancestryFilename;
+	}
+
+	public static String getRandomTreesFilename(){
+		return randomTreesFilename;
+	}
+
 	public static void log(LogTag tag, String line){
 		PrintWriter out = null;
 		switch (tag){
@@ -380,6 +512,14 @@ public class Utils {
 			fsRepulserDistances.close();
 			fsRepulserDistances = null;
 		} catch(Exception e){}
+		try{
+			fsAncestry.close();
+			fsAncestry = null;
+		} catch(Exception e){}
+		try{
+			fsRandomTrees.close();
+			fsRandomTrees = null;
+		} catch(Exception e){}
 	}
 
 	public static void initDecFormatter(){
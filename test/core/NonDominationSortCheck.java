@@ -0,0 +1,184 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import utils.Utils;
+
+// randomized comparison of the ranks of all non domination sorts with reference ranks, peeled front by front from the
+// pairwise dominance of the original Population.dominates(Individual, Individual, boolean) (which calculates the
+// distances itself instead of reading them from the distance matrix the sorts use), for every combination of
+// dominationExcludeFitness, repulseWithValidationOnly and aggregated repulsors; errors and
+// semantics are drawn from a few levels so that ties are common, with undefined (NaN) and negative zero errors and
+// repulsors that are individuals of the population or have the same semantics as one.
+// usage: java core.NonDominationSortCheck [trials] [seed], exits with status 1 on the first difference (see README)
+public class NonDominationSortCheck {
+
+	protected static final int TRAINING_LENGTH = 3;
+	protected static final int VALIDATION_LENGTH = 2;
+
+	// the sorts compared with the reference ranks (all on the same individuals)
+	protected static final String[] SORTS = { "fast non domination sort", "fast non domination sort (parallel)",
+			"efficient / sweep sort", "efficient / sweep sort (parallel)" };
+
+	public static void main(String[] args) {
+		int trials = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : new Random().nextLong();
+		Utils.initDecFormatter();
+		Random random = new Random(seed);
+		int cases = 0;
+		try {
+			for (int trial = 0; trial < trials; trial++) {
+				// mostly small populations with many ties, some large ones for the blocks of the parallel sorts
+				int numberOfIndividuals = 1 + random.nextInt(trial % 10 == 0 ? 1500 : 120);
+				int numberOfRepulsors = 1 + random.nextInt(6);
+				int levels = 2 + random.nextInt(4);
+				Individual[] individuals = new Individual[numberOfIndividuals];
+				for (int i = 0; i < numberOfIndividuals; i++)
+					individuals[i] = createIndividual(random, levels);
+				Individual[] repulsors = new Individual[numberOfRepulsors];
+				for (int r = 0; r < numberOfRepulsors; r++) {
+					int kind = random.nextInt(4);
+					if (kind == 0) {
+						repulsors[r] = individuals[random.nextInt(numberOfIndividuals)];
+					} else if (kind == 1) {
+						repulsors[r] = copySemantics(individuals[random.nextInt(numberOfIndividuals)]);
+					} else {
+						repulsors[r] = createIndividual(random, levels);
+					}
+				}
+				for (int flags = 0; flags < 8; flags++) {
+					boolean excludeFitness = (flags & 1) != 0;
+					boolean validationOnly = (flags & 2) != 0;
+					boolean aggregateRepulsors = (flags & 4) != 0;
+					Population.setRepulseWithValidationOnly(validationOnly);
+					int[] expected = calculateReferenceRanks(individuals, repulsors, excludeFitness, aggregateRepulsors);
+					int[][] ranks = new int[SORTS.length][];
+					ranks[0] = calculateRanks(individuals, repulsors, excludeFitness, aggregateRepulsors,
+							Population.FAST_NON_DOMINATION_SORT, 1);
+					ranks[1] = calculateRanks(individuals, repulsors, excludeFitness, aggregateRepulsors,
+							Population.FAST_NON_DOMINATION_SORT, 4);
+					ranks[2] = calculateRanks(individuals, repulsors, excludeFitness, aggregateRepulsors,
+							Population.EFFICIENT_NON_DOMINATION_SORT, 1);
+					ranks[3] = calculateRanks(individuals, repulsors, excludeFitness, aggregateRepulsors,
+							Population.EFFICIENT_NON_DOMINATION_SORT, 4);
+					for (int s = 0; s < SORTS.length; s++) {
+						if (!Arrays.equals(expected, ranks[s])) {
+							System.out.println("Ranks of the " + SORTS[s] + " differ (seed " + seed + ", trial " + trial
+									+ ", exclude fitness " + excludeFitness + ", validation only " + validationOnly
+									+ ", aggregate repulsors " + aggregateRepulsors + ")");
+							System.out.println("expected: " + Arrays.toString(expected));
+							System.out.println("found:    " + Arrays.toString(ranks[s]));
+							System.exit(1);
+						}
+					}
+					cases++;
+				}
+			}
+		} finally {
+			Population.setRepulseWithValidationOnly(false);
+			Population.setNonDominationSort(Population.EFFICIENT_NON_DOMINATION_SORT);
+			Population.setSortThreads(1);
+		}
+		System.out.println("Ranks of all sorts equal in " + cases + " cases (seed " + seed + ")");
+	}
+
+	// the textbook front peel: the first front is not dominated by any individual, every further front is not
+	// dominated by any individual outside the previous fronts
+	protected static int[] calculateReferenceRanks(Individual[] individuals, Individual[] repulsors,
+			boolean excludeFitness, boolean aggregateRepulsors) {
+		Population population = createPopulation(individuals, repulsors, excludeFitness);
+		int n = individuals.length;
+		boolean[][] dominates = new boolean[n][n];
+		int[] dominationCounts = new int[n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				if (i != j && population.dominates(individuals[i], individuals[j], aggregateRepulsors)) {
+					dominates[i][j] = true;
+					dominationCounts[j]++;
+				}
+			}
+		}
+		int[] ranks = new int[n];
+		int ranked = 0;
+		for (int front = 1; ranked < n; front++) {
+			boolean[] inFront = new boolean[n];
+			int frontSize = 0;
+			for (int i = 0; i < n; i++) {
+				if (ranks[i] == 0 && dominationCounts[i] == 0) {
+					inFront[i] = true;
+					frontSize++;
+				}
+			}
+			// cyclic dominance, the remaining individuals keep rank 0 and can't match any sort
+			if (frontSize == 0)
+				break;
+			for (int i = 0; i < n; i++) {
+				if (!inFront[i])
+					continue;
+				ranks[i] = front;
+				ranked++;
+				for (int j = 0; j < n; j++) {
+					if (dominates[i][j])
+						dominationCounts[j]--;
+				}
+			}
+		}
+		return ranks;
+	}
+
+	protected static int[] calculateRanks(Individual[] individuals, Individual[] repulsors, boolean excludeFitness,
+			boolean aggregateRepulsors, int sort, int threads) {
+		Population.setNonDominationSort(sort);
+		Population.setSortThreads(threads);
+		Population population = createPopulation(individuals, repulsors, excludeFitness);
+		population.nsgaIISort(aggregateRepulsors);
+		int[] ranks = new int[individuals.length];
+		for (int i = 0; i < individuals.length; i++) {
+			ranks[i] = individuals[i].getRank();
+			// a sort that does not set a rank can't pass for the previous one
+			individuals[i].setRank(-1);
+		}
+		return ranks;
+	}
+
+	protected static Population createPopulation(Individual[] individuals, Individual[] repulsors, boolean excludeFitness) {
+		Population population = new Population(false, excludeFitness, false);
+		for (Individual individual : individuals)
+			population.addIndividual(individual);
+		for (Individual repulsor : repulsors)
+			population.repulsors.add(repulsor);
+		return population;
+	}
+
+	protected static Individual createIndividual(Random random, int levels) {
+		Individual individual = new Individual();
+		double[] trainingOutputs = new double[TRAINING_LENGTH];
+		double[] validationOutputs = new double[VALIDATION_LENGTH];
+		for (int i = 0; i < TRAINING_LENGTH; i++)
+			trainingOutputs[i] = random.nextInt(levels);
+		for (int i = 0; i < VALIDATION_LENGTH; i++)
+			validationOutputs[i] = random.nextInt(levels);
+		if (random.nextInt(40) == 0)
+			validationOutputs[0] = Double.NaN;
+		individual.setTrainingDataOutputs(trainingOutputs);
+		individual.setValidationDataOutputs(validationOutputs);
+		int error = random.nextInt(levels * 2);
+		if (random.nextInt(30) == 0)
+			individual.trainingError = Double.NaN;
+		else if (error == 0 && random.nextBoolean())
+			individual.trainingError = -0.0;
+		else
+			individual.trainingError = error;
+		return individual;
+	}
+
+	// a repulsor with the semantics of an individual, without being the individual
+	protected static Individual copySemantics(Individual individual) {
+		Individual copy = new Individual();
+		copy.setTrainingDataOutputs(individual.getTrainingDataOutputs().clone());
+		copy.setValidationDataOutputs(individual.getValidationDataOutputs().clone());
+		copy.trainingError = individual.getTrainingError();
+		return copy;
+	}
+}